@@ -0,0 +1,221 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A driver to analyze all the methods of one or more classes with {@link Analyzer}s. An {@link
+ * Analyzer} can only analyze one method at a time, in a single thread. This class uses a new {@link
+ * Analyzer} for each method, and runs these analyses in parallel with an {@link Executor}. The
+ * results are returned in the order of the input classes and methods, whatever the number of
+ * threads used.
+ * <p>
+ * <p>The interpreter used for each method is defined by overriding {@link #createInterpreter} (or
+ * {@link #createAnalyzer}, for more control). These methods can be called concurrently by several
+ * threads. The interpreters they return can share read-only data, such as class hierarchy
+ * information, provided it can be accessed concurrently.
+ *
+ * @param <V> type of the Value used for the analysis.
+ */
+public abstract class ClassAnalyzer<V extends Value> {
+
+    /**
+     * The executor used to analyze the methods, or <tt>null</tt> to analyze them in the calling
+     * thread.
+     */
+    private final Executor executor;
+
+    /**
+     * Constructs a new {@link ClassAnalyzer}.
+     *
+     * @param executor the executor used to analyze the methods, or <tt>null</tt> to analyze them in
+     *                 the calling thread.
+     */
+    protected ClassAnalyzer(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Analyzes all the methods of the given class.
+     *
+     * @param classNode the class to be analyzed. It must not be modified during the analysis.
+     * @return the frames of each method of the given class, in the order of {@link
+     * ClassNode#methods} (see {@link Analyzer#analyze} for the content of each array).
+     * @throws AnalyzerException if a problem occurs during the analysis of a method.
+     */
+    public Frame<V>[][] analyze(final ClassNode classNode) throws AnalyzerException {
+        List<ClassNode> classNodes = new ArrayList<ClassNode>(1);
+        classNodes.add(classNode);
+        return analyze(classNodes).get(0);
+    }
+
+    /**
+     * Analyzes all the methods of the given classes.
+     *
+     * @param classNodes the classes to be analyzed. They must not be modified during the analysis.
+     * @return the frames of each method of each given class, in the order of the given classes and
+     * of their {@link ClassNode#methods} (see {@link Analyzer#analyze} for the content of each
+     * array).
+     * @throws AnalyzerException if a problem occurs during the analysis of a method. In this case
+     *                           the exception of the first such method is thrown, and the analyses
+     *                           of the following methods are cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Frame<V>[][]> analyze(final List<ClassNode> classNodes) throws AnalyzerException {
+        List<FutureTask<Frame<V>[]>> tasks = new ArrayList<FutureTask<Frame<V>[]>>();
+        for (ClassNode classNode : classNodes) {
+            for (MethodNode methodNode : classNode.methods) {
+                // Make sure that the code of the method is loaded in the calling thread, in case it
+                // is parsed lazily from a shared ClassReader (see ClassNode#readLazily).
+                methodNode.instructions.size();
+                FutureTask<Frame<V>[]> task =
+                        new FutureTask<Frame<V>[]>(new AnalyzeMethodTask(classNode, methodNode));
+                if (executor == null) {
+                    task.run();
+                } else {
+                    executor.execute(task);
+                }
+                tasks.add(task);
+            }
+        }
+        List<Frame<V>[][]> result = new ArrayList<Frame<V>[][]>(classNodes.size());
+        int taskIndex = 0;
+        boolean completed = false;
+        try {
+            for (ClassNode classNode : classNodes) {
+                Frame<V>[][] classFrames = (Frame<V>[][]) new Frame<?>[classNode.methods.size()][];
+                for (int i = 0; i < classFrames.length; ++i) {
+                    classFrames[i] = getResult(tasks.get(taskIndex++));
+                }
+                result.add(classFrames);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (int i = taskIndex; i < tasks.size(); ++i) {
+                    tasks.get(i).cancel(true);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the interpreter to use to analyze the given method. This method can be called
+     * concurrently by several threads.
+     *
+     * @param classNode  the class containing the method to be analyzed.
+     * @param methodNode the method to be analyzed.
+     * @return the interpreter to use to analyze the given method. It must not be used to analyze
+     * any other method concurrently.
+     */
+    protected abstract Interpreter<V> createInterpreter(ClassNode classNode, MethodNode methodNode);
+
+    /**
+     * Returns the analyzer to use to analyze the given method. This method can be called
+     * concurrently by several threads. The default implementation returns a new {@link Analyzer}
+     * using the interpreter returned by {@link #createInterpreter}.
+     *
+     * @param classNode  the class containing the method to be analyzed.
+     * @param methodNode the method to be analyzed.
+     * @return a new analyzer to analyze the given method.
+     */
+    protected Analyzer<V> createAnalyzer(final ClassNode classNode, final MethodNode methodNode) {
+        return new Analyzer<V>(createInterpreter(classNode, methodNode));
+    }
+
+    /**
+     * Waits for the given task to complete, and returns its result.
+     *
+     * @param task a task analyzing a method.
+     * @return the result of the given task.
+     * @throws AnalyzerException if the analysis failed, or if the current thread is interrupted
+     *                           while waiting.
+     */
+    private static <V extends Value> Frame<V>[] getResult(final FutureTask<Frame<V>[]> task)
+            throws AnalyzerException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyzerException(null, "Interrupted while waiting for a method analysis", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AnalyzerException) {
+                throw (AnalyzerException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * A task analyzing a method.
+     */
+    private final class AnalyzeMethodTask implements Callable<Frame<V>[]> {
+
+        /**
+         * The class containing the method to be analyzed.
+         */
+        private final ClassNode classNode;
+
+        /**
+         * The method to be analyzed.
+         */
+        private final MethodNode methodNode;
+
+        /**
+         * Constructs a new {@link AnalyzeMethodTask}.
+         *
+         * @param classNode  the class containing the method to be analyzed.
+         * @param methodNode the method to be analyzed.
+         */
+        AnalyzeMethodTask(final ClassNode classNode, final MethodNode methodNode) {
+            this.classNode = classNode;
+            this.methodNode = methodNode;
+        }
+
+        public Frame<V>[] call() throws AnalyzerException {
+            return createAnalyzer(classNode, methodNode).analyze(classNode.name, methodNode);
+        }
+    }
+}
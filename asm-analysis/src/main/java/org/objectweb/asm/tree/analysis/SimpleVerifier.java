@@ -29,6 +29,7 @@ package org.objectweb.asm.tree.analysis;
 
 import java.util.List;
 
+import org.objectweb.asm.ClassHierarchy;
 import org.objectweb.asm.Type;
 
 /**
@@ -66,6 +67,12 @@ public class SimpleVerifier extends BasicVerifier {
      */
     private ClassLoader loader = getClass().getClassLoader();
 
+    /**
+     * The class hierarchy to use instead of {@link #loader}, or <tt>null</tt> to use {@link
+     * #loader}.
+     */
+    private ClassHierarchy classHierarchy;
+
     /**
      * Constructs a new {@link SimpleVerifier}. <i>Subclasses must not use this constructor</i>.
      * Instead, they must use the {@link #SimpleVerifier(int, Type, Type, List, boolean)} version.
@@ -145,6 +152,21 @@ public class SimpleVerifier extends BasicVerifier {
         this.loader = loader;
     }
 
+    /**
+     * Sets the class hierarchy to be used in {@link #isInterface}, {@link #getSuperClass} and
+     * {@link #isAssignableFrom}, instead of the <code>ClassLoader</code>. The hierarchy information
+     * is then read from the ClassFile structures of the classes, without loading them, and is
+     * cached in the given {@link ClassHierarchy}. Since this class is thread safe, it can be shared
+     * between all the {@link SimpleVerifier}s of an application, e.g. to verify several methods in
+     * parallel with a {@link ClassAnalyzer}.
+     *
+     * @param classHierarchy the class hierarchy to use, or <tt>null</tt> to load the classes with
+     *                       the <code>ClassLoader</code>.
+     */
+    public void setClassHierarchy(final ClassHierarchy classHierarchy) {
+        this.classHierarchy = classHierarchy;
+    }
+
     @Override
     public BasicValue newValue(final Type type) {
         if (type == null) {
@@ -285,7 +307,8 @@ public class SimpleVerifier extends BasicVerifier {
 
     /**
      * Returns whether the given type corresponds to the type of an interface. The default
-     * implementation of this method loads the class and uses the reflection API to return its result
+     * implementation of this method uses the class hierarchy set with {@link #setClassHierarchy}
+     * or, if there is none, loads the class and uses the reflection API to return its result
      * (unless the given type corresponds to the class being verified).
      *
      * @param type a type.
@@ -295,13 +318,18 @@ public class SimpleVerifier extends BasicVerifier {
         if (currentClass != null && type.equals(currentClass)) {
             return isInterface;
         }
+        if (classHierarchy != null) {
+            return type.getSort() == Type.OBJECT
+                    && classHierarchy.isInterface(type.getInternalName());
+        }
         return getClass(type).isInterface();
     }
 
     /**
      * Returns the type corresponding to the super class of the given type. The default implementation
-     * of this method loads the class and uses the reflection API to return its result (unless the
-     * given type corresponds to the class being verified).
+     * of this method uses the class hierarchy set with {@link #setClassHierarchy} or, if there is
+     * none, loads the class and uses the reflection API to return its result (unless the given type
+     * corresponds to the class being verified).
      *
      * @param type a type.
      * @return the type corresponding to the super class of 'type'.
@@ -310,6 +338,13 @@ public class SimpleVerifier extends BasicVerifier {
         if (currentClass != null && type.equals(currentClass)) {
             return currentSuperClass;
         }
+        if (classHierarchy != null) {
+            if (type.getSort() == Type.ARRAY) {
+                return Type.getObjectType("java/lang/Object");
+            }
+            String superName = classHierarchy.getSuperClass(type.getInternalName());
+            return superName == null ? null : Type.getObjectType(superName);
+        }
         Class<?> superClass = getClass(type).getSuperclass();
         return superClass == null ? null : Type.getType(superClass);
     }
@@ -317,9 +352,10 @@ public class SimpleVerifier extends BasicVerifier {
     /**
      * Returns whether the class corresponding to the first argument is either the same as, or is a
      * superclass or superinterface of the class corresponding to the second argument. The default
-     * implementation of this method loads the classes and uses the reflection API to return its
-     * result (unless the result can be computed from the class being verified, and the types of its
-     * super classes and implemented interfaces).
+     * implementation of this method uses the class hierarchy set with {@link #setClassHierarchy}
+     * or, if there is none, loads the classes and uses the reflection API to return its result
+     * (unless the result can be computed from the class being verified, and the types of its super
+     * classes and implemented interfaces).
      *
      * @param type1 a type.
      * @param type2 another type.
@@ -354,6 +390,9 @@ public class SimpleVerifier extends BasicVerifier {
             }
             return false;
         }
+        if (classHierarchy != null) {
+            return isAssignableFromInHierarchy(type1, type2);
+        }
         Class<?> class1 = getClass(type1);
         if (class1.isInterface()) {
             class1 = Object.class;
@@ -361,6 +400,39 @@ public class SimpleVerifier extends BasicVerifier {
         return class1.isAssignableFrom(getClass(type2));
     }
 
+    /**
+     * Returns whether the class corresponding to the first argument is either the same as, or is a
+     * superclass or superinterface of the class corresponding to the second argument, using {@link
+     * #classHierarchy}. As with the reflection API, interfaces are considered as {@link Object}.
+     *
+     * @param type1 an object or array type.
+     * @param type2 another object or array type.
+     * @return whether the class corresponding to 'type1' is either the same as, or is a superclass or
+     * superinterface of the class corresponding to 'type2'.
+     */
+    private boolean isAssignableFromInHierarchy(final Type type1, final Type type2) {
+        if (type1.getSort() == Type.ARRAY) {
+            if (type2.getSort() != Type.ARRAY) {
+                return false;
+            }
+            Type componentType1 = Type.getType(type1.getDescriptor().substring(1));
+            Type componentType2 = Type.getType(type2.getDescriptor().substring(1));
+            if (componentType1.getSort() < Type.ARRAY || componentType2.getSort() < Type.ARRAY) {
+                // Arrays of primitive types are only assignable to arrays of the same type.
+                return componentType1.equals(componentType2);
+            }
+            return isAssignableFrom(componentType1, componentType2);
+        }
+        String internalName1 = type1.getInternalName();
+        if (internalName1.equals("java/lang/Object") || classHierarchy.isInterface(internalName1)) {
+            return true;
+        }
+        if (type2.getSort() == Type.ARRAY) {
+            return false;
+        }
+        return classHierarchy.isAssignableFrom(internalName1, type2.getInternalName());
+    }
+
     /**
      * Loads the class corresponding to the given type. The class is loaded with the class loader
      * specified with {@link #setClassLoader}, or with the class loader of this class if no class
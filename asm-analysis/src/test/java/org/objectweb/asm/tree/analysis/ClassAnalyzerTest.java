@@ -0,0 +1,157 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * ClassAnalyzer tests.
+ */
+public class ClassAnalyzerTest extends AsmTest {
+
+    /**
+     * Tests that analyzing the methods of the precompiled classes in parallel gives the same
+     * results as analyzing them sequentially.
+     *
+     * @throws AnalyzerException
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testAnalyze(final PrecompiledClass classParameter, final Api apiParameter)
+            throws AnalyzerException {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Frame<BasicValue>[][] frames = new BasicClassAnalyzer(executor).analyze(classNode);
+            assertEquals(classNode.methods.size(), frames.length);
+            for (int i = 0; i < frames.length; ++i) {
+                MethodNode methodNode = classNode.methods.get(i);
+                Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(new BasicVerifier());
+                Frame<BasicValue>[] expectedFrames = analyzer.analyze(classNode.name, methodNode);
+                assertEquals(toString(expectedFrames), toString(frames[i]));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that several classes can be analyzed together, in the calling thread.
+     *
+     * @throws AnalyzerException
+     */
+    @Test
+    public void testAnalyzeSeveralClasses() throws AnalyzerException {
+        List<ClassNode> classNodes = new ArrayList<ClassNode>();
+        classNodes.add(newClassNode("C1", 2));
+        classNodes.add(newClassNode("C2", 0));
+        classNodes.add(newClassNode("C3", 1));
+        List<Frame<BasicValue>[][]> frames = new BasicClassAnalyzer(null).analyze(classNodes);
+        assertEquals(3, frames.size());
+        assertEquals(2, frames.get(0).length);
+        assertEquals(0, frames.get(1).length);
+        assertEquals(1, frames.get(2).length);
+        assertEquals(1, frames.get(2)[0].length);
+    }
+
+    /**
+     * Tests that the exception thrown by the analysis of a method is propagated to the caller.
+     */
+    @Test
+    public void testAnalyzeInvalidMethod() {
+        ClassNode classNode = newClassNode("C", 2);
+        MethodNode invalidMethod = classNode.methods.get(1);
+        invalidMethod.instructions.clear();
+        invalidMethod.instructions.add(new InsnNode(Opcodes.NOP));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AnalyzerException exception =
+                    assertThrows(
+                            AnalyzerException.class,
+                            () -> new BasicClassAnalyzer(executor).analyze(classNode));
+            assertEquals("Execution can fall off the end of the code", exception.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ClassNode newClassNode(final String name, final int numMethods) {
+        ClassNode classNode = new ClassNode();
+        classNode.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        for (int i = 0; i < numMethods; ++i) {
+            int access = Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC;
+            MethodNode methodNode =
+                    (MethodNode) classNode.visitMethod(access, "m" + i, "()V", null, null);
+            methodNode.visitCode();
+            methodNode.visitInsn(Opcodes.RETURN);
+            methodNode.visitMaxs(0, 0);
+            methodNode.visitEnd();
+        }
+        classNode.visitEnd();
+        return classNode;
+    }
+
+    private static String toString(final Frame<BasicValue>[] frames) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (Frame<BasicValue> frame : frames) {
+            stringBuilder.append(frame).append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    private static class BasicClassAnalyzer extends ClassAnalyzer<BasicValue> {
+
+        BasicClassAnalyzer(final Executor executor) {
+            super(executor);
+        }
+
+        @Override
+        protected Interpreter<BasicValue> createInterpreter(
+                final ClassNode classNode, final MethodNode methodNode) {
+            return new BasicVerifier();
+        }
+    }
+}
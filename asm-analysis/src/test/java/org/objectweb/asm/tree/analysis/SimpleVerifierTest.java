@@ -27,6 +27,7 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.tree.analysis;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -38,6 +39,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassHierarchy;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
@@ -512,6 +514,46 @@ public class SimpleVerifierTest extends AsmTest implements Opcodes {
         }.test();
     }
 
+    @Test
+    void testIsAssignableFromWithClassHierarchy() {
+        ClassHierarchy classHierarchy = new ClassHierarchy();
+        classHierarchy.addClass("C", ACC_PUBLIC, "D", new String[] {"I"});
+        classHierarchy.addClass("D", ACC_PUBLIC, "java/lang/Object", null);
+        classHierarchy.addClass("E", ACC_PUBLIC, "java/lang/Object", null);
+        classHierarchy.addClass("I", ACC_PUBLIC | ACC_INTERFACE, "java/lang/Object", null);
+        Type baseType = Type.getObjectType("C");
+        Type superType = Type.getObjectType("D");
+        Type otherType = Type.getObjectType("E");
+        Type interfaceType = Type.getObjectType("I");
+        new SimpleVerifier(ASM6, null, null, null, false) {
+
+            void test() {
+                setClassHierarchy(classHierarchy);
+                assertTrue(isAssignableFrom(superType, baseType));
+                assertTrue(isAssignableFrom(interfaceType, otherType));
+                assertFalse(isAssignableFrom(baseType, superType));
+                assertFalse(isAssignableFrom(otherType, baseType));
+                Type objectArrayType = Type.getType("[Ljava/lang/Object;");
+                assertTrue(isAssignableFrom(objectArrayType, Type.getType("[[LC;")));
+                assertFalse(isAssignableFrom(Type.getType("[LD;"), Type.getType("[[LC;")));
+                assertTrue(isAssignableFrom(Type.getType("[[LD;"), Type.getType("[[LC;")));
+                assertFalse(isAssignableFrom(Type.getType("[[LC;"), Type.getType("[[LD;")));
+                assertFalse(isAssignableFrom(Type.getType("[I"), Type.getType("[F")));
+                assertFalse(isAssignableFrom(superType, Type.getType("[I")));
+                assertTrue(isInterface(interfaceType));
+                assertFalse(isInterface(baseType));
+                assertEquals(superType, getSuperClass(baseType));
+                Type objectType = Type.getObjectType("java/lang/Object");
+                assertEquals(objectType, getSuperClass(Type.getType("[I")));
+            }
+
+            @Override
+            protected Class<?> getClass(final Type type) {
+                throw new AssertionError("The classes must not be loaded");
+            }
+        }.test();
+    }
+
     /**
      * Tests that the precompiled classes can be successfully analyzed with a SimpleVerifier.
      *
@@ -528,4 +570,26 @@ public class SimpleVerifierTest extends AsmTest implements Opcodes {
             analyzer.analyze(classNode.name, methodNode);
         }
     }
+
+    /**
+     * Tests that the precompiled classes can be successfully analyzed with a SimpleVerifier using a
+     * shared ClassHierarchy.
+     *
+     * @throws AnalyzerException
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testAnalyzeWithClassHierarchy(
+            final PrecompiledClass classParameter, final Api apiParameter)
+            throws AnalyzerException {
+        ClassHierarchy classHierarchy = new ClassHierarchy();
+        ClassNode classNode = new ClassNode();
+        new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+        for (MethodNode methodNode : classNode.methods) {
+            SimpleVerifier simpleVerifier = new SimpleVerifier();
+            simpleVerifier.setClassHierarchy(classHierarchy);
+            Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(simpleVerifier);
+            analyzer.analyze(classNode.name, methodNode);
+        }
+    }
 }
@@ -0,0 +1,205 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Remapper} which caches the descriptors and signatures remapped by another {@link
+ * Remapper}. The other methods are delegated to this other remapper, without caching. This class
+ * is thread safe if the remapper it delegates to is thread safe, so that a single {@link
+ * CachingRemapper} can be shared between several threads, e.g. to remap many classes in parallel
+ * with a {@link ClassFileProcessor}. The caches are bounded: each of them is cleared when its size
+ * reaches a given maximum.
+ */
+public class CachingRemapper extends Remapper {
+
+    /**
+     * The default maximum number of entries of each cache.
+     */
+    private static final int DEFAULT_MAX_CACHE_SIZE = 16384;
+
+    /**
+     * The remapper to which the calls are delegated.
+     */
+    private final Remapper remapper;
+
+    /**
+     * The maximum number of entries of each cache.
+     */
+    private final int maxCacheSize;
+
+    /**
+     * The field and method descriptors remapped by {@link #remapper}, indexed by the original ones.
+     */
+    private final ConcurrentHashMap<String, String> descriptors;
+
+    /**
+     * The class and method signatures remapped by {@link #remapper}, indexed by the original ones.
+     */
+    private final ConcurrentHashMap<String, String> signatures;
+
+    /**
+     * The field type signatures remapped by {@link #remapper}, indexed by the original ones.
+     */
+    private final ConcurrentHashMap<String, String> typeSignatures;
+
+    /**
+     * Constructs a new {@link CachingRemapper} with a default maximum cache size.
+     *
+     * @param remapper the remapper to which the calls must be delegated.
+     */
+    public CachingRemapper(final Remapper remapper) {
+        this(remapper, DEFAULT_MAX_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a new {@link CachingRemapper}.
+     *
+     * @param remapper     the remapper to which the calls must be delegated.
+     * @param maxCacheSize the maximum number of entries of each cache.
+     */
+    public CachingRemapper(final Remapper remapper, final int maxCacheSize) {
+        if (maxCacheSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum cache size: " + maxCacheSize);
+        }
+        this.remapper = remapper;
+        this.maxCacheSize = maxCacheSize;
+        this.descriptors = new ConcurrentHashMap<String, String>();
+        this.signatures = new ConcurrentHashMap<String, String>();
+        this.typeSignatures = new ConcurrentHashMap<String, String>();
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Cached methods
+    // -----------------------------------------------------------------------------------------------
+
+    @Override
+    public String mapDesc(final String desc) {
+        String newDesc = descriptors.get(desc);
+        if (newDesc == null) {
+            newDesc = remapper.mapDesc(desc);
+            put(descriptors, desc, newDesc);
+        }
+        return newDesc;
+    }
+
+    @Override
+    public String mapMethodDesc(final String desc) {
+        String newDesc = descriptors.get(desc);
+        if (newDesc == null) {
+            newDesc = remapper.mapMethodDesc(desc);
+            put(descriptors, desc, newDesc);
+        }
+        return newDesc;
+    }
+
+    @Override
+    public String mapSignature(final String signature, final boolean typeSignature) {
+        if (signature == null) {
+            return null;
+        }
+        ConcurrentHashMap<String, String> cache = typeSignature ? typeSignatures : signatures;
+        String newSignature = cache.get(signature);
+        if (newSignature == null) {
+            newSignature = remapper.mapSignature(signature, typeSignature);
+            put(cache, signature, newSignature);
+        }
+        return newSignature;
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Delegated methods
+    // -----------------------------------------------------------------------------------------------
+
+    @Override
+    public String mapType(final String type) {
+        return remapper.mapType(type);
+    }
+
+    @Override
+    public String[] mapTypes(final String[] types) {
+        return remapper.mapTypes(types);
+    }
+
+    @Override
+    public Object mapValue(final Object value) {
+        return remapper.mapValue(value);
+    }
+
+    @Override
+    public String mapMethodName(final String owner, final String name, final String desc) {
+        return remapper.mapMethodName(owner, name, desc);
+    }
+
+    @Override
+    public String mapInvokeDynamicMethodName(final String name, final String desc) {
+        return remapper.mapInvokeDynamicMethodName(name, desc);
+    }
+
+    @Override
+    public String mapFieldName(final String owner, final String name, final String desc) {
+        return remapper.mapFieldName(owner, name, desc);
+    }
+
+    @Override
+    public String mapPackageName(final String name) {
+        return remapper.mapPackageName(name);
+    }
+
+    @Override
+    public String mapModuleName(final String name) {
+        return remapper.mapModuleName(name);
+    }
+
+    @Override
+    public String map(final String typeName) {
+        return remapper.map(typeName);
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Utility methods
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Adds an entry to the given cache, after clearing it if it is full.
+     *
+     * @param cache    one of {@link #descriptors}, {@link #signatures} or {@link #typeSignatures}.
+     * @param key      an original descriptor or signature.
+     * @param newValue the remapped value of key.
+     */
+    private void put(
+            final ConcurrentHashMap<String, String> cache,
+            final String key,
+            final String newValue) {
+        if (cache.size() >= maxCacheSize) {
+            cache.clear();
+        }
+        cache.put(key, newValue);
+    }
+}
@@ -0,0 +1,634 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A driver to transform all the classes of a jar file or of a directory, with a ClassReader ->
+ * ClassVisitor -> ClassWriter pipeline. The classes are transformed in parallel with an {@link
+ * Executor}, while the entries of the input are read and the results are written in the calling
+ * thread, in the order of the input entries. The result is therefore deterministic, whatever the
+ * number of threads used. The resources (i.e. the entries which are not class files) are copied
+ * unchanged by default.
+ * <p>
+ * <p>The transformation applied to each class is defined by overriding {@link #createClassVisitor}
+ * (or {@link #processClass}, for more control). These methods can be called concurrently by several
+ * threads. The resources can be transformed by overriding {@link #processResource}, and the
+ * entries can be renamed or removed by overriding {@link #getOutputEntryName}.
+ */
+public class ClassFileProcessor {
+
+    /**
+     * The default maximum number of entries which can be read, but not yet written.
+     */
+    static final int DEFAULT_MAX_PENDING_ENTRIES = 256;
+
+    /**
+     * The options used to parse the classes. One or more of {@link ClassReader#SKIP_CODE}, {@link
+     * ClassReader#SKIP_DEBUG}, {@link ClassReader#SKIP_FRAMES} or {@link ClassReader#EXPAND_FRAMES}.
+     */
+    protected final int parsingOptions;
+
+    /**
+     * The options used to write the classes. One or more of {@link ClassWriter#COMPUTE_MAXS} and
+     * {@link ClassWriter#COMPUTE_FRAMES}.
+     */
+    protected final int writerFlags;
+
+    /**
+     * The executor used to transform the classes, or <tt>null</tt> to transform them in the calling
+     * thread.
+     */
+    private final Executor executor;
+
+    /**
+     * The maximum number of entries which can be read, but not yet written. This bounds the memory
+     * used to process an archive, whatever its size.
+     */
+    private final int maxPendingEntries;
+
+    /**
+     * Constructs a new {@link ClassFileProcessor} which transforms the classes in the calling thread.
+     *
+     * @param parsingOptions the options used to parse the classes (see {@link ClassReader#accept}).
+     * @param writerFlags    the options used to write the classes (see {@link ClassWriter}).
+     */
+    public ClassFileProcessor(final int parsingOptions, final int writerFlags) {
+        this(parsingOptions, writerFlags, null, DEFAULT_MAX_PENDING_ENTRIES);
+    }
+
+    /**
+     * Constructs a new {@link ClassFileProcessor}.
+     *
+     * @param parsingOptions    the options used to parse the classes (see {@link
+     *                          ClassReader#accept}).
+     * @param writerFlags       the options used to write the classes (see {@link ClassWriter}).
+     * @param executor          the executor used to transform the classes, or <tt>null</tt> to
+     *                          transform them in the calling thread.
+     * @param maxPendingEntries the maximum number of entries which can be read, but not yet written.
+     *                          When this number is reached, the calling thread waits for the oldest
+     *                          entry to be transformed and written, before reading a new one.
+     */
+    public ClassFileProcessor(
+            final int parsingOptions,
+            final int writerFlags,
+            final Executor executor,
+            final int maxPendingEntries) {
+        if (maxPendingEntries < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.parsingOptions = parsingOptions;
+        this.writerFlags = writerFlags;
+        this.executor = executor;
+        this.maxPendingEntries = maxPendingEntries;
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Methods to be overridden
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the visitor which must transform a class, and send the result to the given visitor.
+     * The default implementation of this method returns the given visitor, i.e. copies the class
+     * unchanged.
+     *
+     * @param entryName    the name of the entry containing the class, relative to the root of the
+     *                     processed jar or directory, and using '/' as separator.
+     * @param classVisitor the visitor to which the transformed class must be sent.
+     * @return the visitor which must transform the class.
+     */
+    protected ClassVisitor createClassVisitor(
+            final String entryName, final ClassVisitor classVisitor) {
+        return classVisitor;
+    }
+
+    /**
+     * Returns the class writer to be used to write a transformed class. The default implementation
+     * of this method returns a {@link ClassWriter} constructed from the given reader, with {@link
+     * #writerFlags}. It can be overridden to use a {@link ClassWriter} subclass (e.g. with a custom
+     * {@link ClassWriter#getCommonSuperClass} method).
+     *
+     * @param classReader the reader of the class to be transformed.
+     * @return the class writer to be used to write the transformed class.
+     */
+    protected ClassWriter createClassWriter(final ClassReader classReader) {
+        return new ClassWriter(classReader, writerFlags);
+    }
+
+    /**
+     * Transforms a class. The default implementation of this method reads the class with a {@link
+     * ClassReader}, and makes it visit the visitor returned by {@link #createClassVisitor}, itself
+     * delegating to the writer returned by {@link #createClassWriter}.
+     *
+     * @param entryName the name of the entry containing the class, relative to the root of the
+     *                  processed jar or directory, and using '/' as separator.
+     * @param classFile the content of the class file to be transformed.
+     * @return the transformed class file, or <tt>null</tt> to remove this class from the output.
+     */
+    protected byte[] processClass(final String entryName, final byte[] classFile) {
+        ClassReader classReader = new ClassReader(classFile);
+        ClassWriter classWriter = createClassWriter(classReader);
+        classReader.accept(createClassVisitor(entryName, classWriter), parsingOptions);
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Returns whether the given entry contains a class which must be transformed with {@link
+     * #processClass}. The default implementation returns <tt>true</tt> for all the ".class" files.
+     *
+     * @param entryName the name of an entry, relative to the root of the processed jar or directory,
+     *                  and using '/' as separator.
+     * @return whether the given entry must be transformed with {@link #processClass}, or copied
+     * unchanged.
+     */
+    protected boolean isClassFile(final String entryName) {
+        return entryName.endsWith(".class");
+    }
+
+    /**
+     * Transforms a resource, i.e. an entry which is not a class file. This method is called in the
+     * thread calling {@link #process}. The default implementation of this method returns the given
+     * content, i.e. copies the resource unchanged.
+     *
+     * @param entryName the name of the entry containing the resource, relative to the root of the
+     *                  processed jar or directory, and using '/' as separator.
+     * @param content   the content of the resource.
+     * @return the transformed content, or <tt>null</tt> to remove this resource from the output.
+     */
+    protected byte[] processResource(final String entryName, final byte[] content) {
+        return content;
+    }
+
+    /**
+     * Returns the name under which an entry must be written in the output. This method is called in
+     * the thread calling {@link #process}. The default implementation of this method returns the
+     * given name, i.e. does not rename the entries.
+     *
+     * @param entryName the name of an entry of the input, relative to the root of the processed jar
+     *                  or directory, and using '/' as separator. The name of a directory entry ends
+     *                  with '/'.
+     * @return the name of the corresponding output entry, relative to the root of the output jar or
+     * directory, and using '/' as separator, or <tt>null</tt> to remove this entry from the output.
+     */
+    protected String getOutputEntryName(final String entryName) {
+        return entryName;
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Public methods
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Transforms all the classes of a jar file or of a directory.
+     *
+     * @param input  a jar (or zip) file, or a directory.
+     * @param output the jar file (if input is a file) or the directory (if input is a directory)
+     *               where the transformed classes and the resources must be written.
+     * @throws IOException if a problem occurs during reading or writing.
+     */
+    public void process(final File input, final File output) throws IOException {
+        if (input.isDirectory()) {
+            // The classes which have been read, but not yet written, in the input order.
+            LinkedList<PendingEntry> pendingEntries = new LinkedList<PendingEntry>();
+            boolean completed = false;
+            try {
+                createDirectory(output);
+                processDirectory(input, "", output, pendingEntries);
+                while (!pendingEntries.isEmpty()) {
+                    pendingEntries.removeFirst().write();
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    cancel(pendingEntries);
+                }
+            }
+            return;
+        }
+        InputStream inputStream = new FileInputStream(input);
+        try {
+            OutputStream outputStream = new FileOutputStream(output);
+            try {
+                process(inputStream, outputStream);
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Transforms all the classes of a jar (or zip) archive. The input and output streams are not
+     * closed by this method.
+     *
+     * @param input  an input stream containing a jar (or zip) archive.
+     * @param output the output stream where the transformed archive must be written.
+     * @throws IOException if a problem occurs during reading or writing.
+     */
+    public void process(final InputStream input, final OutputStream output) throws IOException {
+        ZipInputStream zipInputStream = new ZipInputStream(input);
+        ZipOutputStream zipOutputStream = new ZipOutputStream(output);
+        // The entries which have been read, but not yet written, in the input order.
+        LinkedList<PendingEntry> pendingEntries = new LinkedList<PendingEntry>();
+        boolean completed = false;
+        try {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                if (pendingEntries.size() == maxPendingEntries) {
+                    pendingEntries.removeFirst().write(zipOutputStream);
+                }
+                byte[] content =
+                        zipEntry.isDirectory() ? null : readEntry(zipInputStream, zipEntry);
+                PendingEntry pendingEntry = createPendingEntry(zipEntry, content);
+                if (pendingEntry != null) {
+                    pendingEntries.addLast(pendingEntry);
+                }
+            }
+            while (!pendingEntries.isEmpty()) {
+                pendingEntries.removeFirst().write(zipOutputStream);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                cancel(pendingEntries);
+            }
+        }
+        zipOutputStream.finish();
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Utility methods
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a {@link PendingEntry} for the given entry, and submits the transformation of its
+     * content to {@link #executor}, if needed.
+     *
+     * @param zipEntry an entry of the processed archive.
+     * @param content  the content of this entry, or <tt>null</tt> for a directory entry.
+     * @return a {@link PendingEntry} for the given entry, or <tt>null</tt> if it is an entry
+     * removed by {@link #getOutputEntryName} or a resource removed by {@link #processResource}.
+     */
+    private PendingEntry createPendingEntry(final ZipEntry zipEntry, final byte[] content) {
+        String entryName = zipEntry.getName();
+        String outputEntryName = getOutputEntryName(entryName);
+        if (outputEntryName == null) {
+            return null;
+        }
+        byte[] outputContent = content;
+        if (content != null && !isClassFile(entryName)) {
+            outputContent = processResource(entryName, content);
+            if (outputContent == null) {
+                return null;
+            }
+        }
+        ZipEntry outputEntry = new ZipEntry(outputEntryName);
+        if (zipEntry.getTime() != -1) {
+            outputEntry.setTime(zipEntry.getTime());
+        }
+        if (content == null || !isClassFile(entryName)) {
+            return new PendingEntry(outputEntry, null, outputContent, null);
+        }
+        return new PendingEntry(outputEntry, null, null, submit(entryName, content));
+    }
+
+    /**
+     * Transforms all the classes of a directory, recursively. The entries of each directory are
+     * processed in the alphabetical order of their names.
+     *
+     * @param inputDirectory  the directory to be processed.
+     * @param entryPrefix     the name of inputDirectory relative to the root processed directory,
+     *                        followed by '/' (or the empty string for the root directory).
+     * @param outputRoot      the directory where the content of the root processed directory must
+     *                        be written.
+     * @param pendingEntries  the classes which have been read, but not yet written, in the input
+     *                        order. This single queue is shared by all the recursive calls, so
+     *                        that its size is bounded by {@link #maxPendingEntries}.
+     * @throws IOException if a problem occurs during reading or writing.
+     */
+    private void processDirectory(
+            final File inputDirectory,
+            final String entryPrefix,
+            final File outputRoot,
+            final LinkedList<PendingEntry> pendingEntries)
+            throws IOException {
+        File[] files = inputDirectory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list directory " + inputDirectory);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String entryName = entryPrefix + file.getName();
+            if (file.isDirectory()) {
+                File outputDirectory = getOutputFile(outputRoot, entryName + '/');
+                if (outputDirectory != null) {
+                    createDirectory(outputDirectory);
+                }
+                processDirectory(file, entryName + '/', outputRoot, pendingEntries);
+                continue;
+            }
+            File outputFile = getOutputFile(outputRoot, entryName);
+            if (outputFile == null) {
+                continue;
+            }
+            createDirectory(outputFile.getParentFile());
+            byte[] content = readFile(file);
+            if (!isClassFile(entryName)) {
+                writeFile(outputFile, processResource(entryName, content));
+                continue;
+            }
+            if (pendingEntries.size() == maxPendingEntries) {
+                pendingEntries.removeFirst().write();
+            }
+            FutureTask<byte[]> task = submit(entryName, content);
+            pendingEntries.addLast(new PendingEntry(null, outputFile, null, task));
+        }
+    }
+
+    /**
+     * Submits the transformation of a class to {@link #executor}, or executes it in the calling
+     * thread if there is no executor.
+     *
+     * @param entryName the name of the entry containing the class to be transformed.
+     * @param classFile the content of the class file to be transformed.
+     * @return the task transforming the class.
+     */
+    private FutureTask<byte[]> submit(final String entryName, final byte[] classFile) {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new ProcessClassTask(entryName, classFile));
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Waits for the given task to complete, and returns its result.
+     *
+     * @param task a task transforming a class.
+     * @return the result of the given task.
+     * @throws IOException if the current thread is interrupted while waiting.
+     */
+    private static byte[] getResult(final FutureTask<byte[]> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a class transformation");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Cancels the transformations of the given entries, after a failure.
+     *
+     * @param pendingEntries the entries which have been read, but not yet written.
+     */
+    private static void cancel(final LinkedList<PendingEntry> pendingEntries) {
+        for (PendingEntry pendingEntry : pendingEntries) {
+            if (pendingEntry.task != null) {
+                pendingEntry.task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the file where an entry must be written, in a processed directory.
+     *
+     * @param outputRoot the directory where the content of the root processed directory must be
+     *                   written.
+     * @param entryName  the name of an entry relative to the root processed directory.
+     * @return the file where the given entry must be written, or <tt>null</tt> if this entry must
+     * not be written.
+     */
+    private File getOutputFile(final File outputRoot, final String entryName) {
+        String outputEntryName = getOutputEntryName(entryName);
+        return outputEntryName == null ? null : new File(outputRoot, outputEntryName);
+    }
+
+    /**
+     * Creates the given directory, and its parent directories, if they do not already exist.
+     *
+     * @param directory a directory.
+     * @throws IOException if the directory can not be created.
+     */
+    private static void createDirectory(final File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+    }
+
+    /**
+     * Reads the content of the current entry of a zip input stream.
+     *
+     * @param zipInputStream a zip input stream.
+     * @param zipEntry       the current entry of this stream.
+     * @return the content of the given entry.
+     * @throws IOException if a problem occurs during reading.
+     */
+    private static byte[] readEntry(final ZipInputStream zipInputStream, final ZipEntry zipEntry)
+            throws IOException {
+        long size = zipEntry.getSize();
+        if (size >= 0 && size < Integer.MAX_VALUE) {
+            // If the size of the entry is known, read it directly into an array of this size.
+            byte[] content = new byte[(int) size];
+            new DataInputStream(zipInputStream).readFully(content);
+            return content;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int bytesRead;
+        while ((bytesRead = zipInputStream.read(buffer, 0, buffer.length)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Reads the content of a file.
+     *
+     * @param file a file.
+     * @return the content of the given file.
+     * @throws IOException if a problem occurs during reading.
+     */
+    private static byte[] readFile(final File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] content = new byte[(int) file.length()];
+            new DataInputStream(inputStream).readFully(content);
+            return content;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes the given content in a file.
+     *
+     * @param file    a file.
+     * @param content the content to be written, or <tt>null</tt> to not create the file.
+     * @throws IOException if a problem occurs during writing.
+     */
+    private static void writeFile(final File file, final byte[] content) throws IOException {
+        if (content == null) {
+            return;
+        }
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * A task transforming a class with {@link #processClass}.
+     */
+    private final class ProcessClassTask implements Callable<byte[]> {
+
+        /**
+         * The name of the entry containing the class to be transformed.
+         */
+        private final String entryName;
+
+        /**
+         * The content of the class file to be transformed.
+         */
+        private final byte[] classFile;
+
+        ProcessClassTask(final String entryName, final byte[] classFile) {
+            this.entryName = entryName;
+            this.classFile = classFile;
+        }
+
+        public byte[] call() {
+            return processClass(entryName, classFile);
+        }
+    }
+
+    /**
+     * An entry of a processed archive or directory, which has been read but not yet written.
+     */
+    private static final class PendingEntry {
+
+        /**
+         * The entry to be written in the output archive, or <tt>null</tt> when processing a
+         * directory.
+         */
+        private final ZipEntry outputEntry;
+
+        /**
+         * The file to be written in the output directory, or <tt>null</tt> when processing an
+         * archive.
+         */
+        private final File outputFile;
+
+        /**
+         * The content of the entry, or <tt>null</tt> if it is a directory or a transformed class.
+         */
+        private final byte[] content;
+
+        /**
+         * The task computing the content of the entry, for a transformed class, or <tt>null</tt>.
+         */
+        private final FutureTask<byte[]> task;
+
+        PendingEntry(
+                final ZipEntry outputEntry,
+                final File outputFile,
+                final byte[] content,
+                final FutureTask<byte[]> task) {
+            this.outputEntry = outputEntry;
+            this.outputFile = outputFile;
+            this.content = content;
+            this.task = task;
+        }
+
+        /**
+         * Writes this entry in the given output archive, after waiting for its content to be
+         * computed, if needed.
+         *
+         * @param zipOutputStream the output archive.
+         * @throws IOException if a problem occurs during writing.
+         */
+        void write(final ZipOutputStream zipOutputStream) throws IOException {
+            byte[] outputContent = task == null ? content : getResult(task);
+            if (task != null && outputContent == null) {
+                // The class has been removed by processClass.
+                return;
+            }
+            zipOutputStream.putNextEntry(outputEntry);
+            if (outputContent != null) {
+                zipOutputStream.write(outputContent);
+            }
+            zipOutputStream.closeEntry();
+        }
+
+        /**
+         * Writes this entry in the output directory, after waiting for its content to be computed,
+         * if needed.
+         *
+         * @throws IOException if a problem occurs during writing.
+         */
+        void write() throws IOException {
+            writeFile(outputFile, task == null ? content : getResult(task));
+        }
+    }
+}
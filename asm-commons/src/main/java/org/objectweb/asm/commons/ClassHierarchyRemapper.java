@@ -0,0 +1,309 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassHierarchy;
+
+/**
+ * A {@link Remapper} which renames the fields and methods inherited by a class like the
+ * corresponding members of its super classes and interfaces. The mapping is defined by another
+ * {@link Remapper}, in which each field or method mapping only needs to be defined for the class
+ * declaring the member. A reference to a member of a class, via this class or a subclass, is then
+ * remapped by looking for a mapping in this class, then in its super classes, and then in its
+ * interfaces, using a {@link ClassHierarchy}. The result of this resolution is cached. This class
+ * is thread safe if the remapper it delegates to is thread safe. The classes which can not be
+ * found in the class hierarchy are considered to have no super class and no interface.
+ *
+ * <p>The access flags of the members are not known by this remapper. Private and static members
+ * are therefore resolved like inherited ones: a private or static method of a subclass, which has
+ * the same name and descriptor as a renamed method of a super class, is renamed like this method
+ * (unless it has its own mapping to another name). The same applies to fields. If this is not
+ * desired, such members must be given their own mapping in the delegate remapper.
+ */
+public class ClassHierarchyRemapper extends Remapper {
+
+    /**
+     * The remapper defining the mapping.
+     */
+    private final Remapper remapper;
+
+    /**
+     * The class hierarchy used to find the super classes and interfaces of a class.
+     */
+    private final ClassHierarchy classHierarchy;
+
+    /**
+     * The new method names, indexed by owner, old name and descriptor, separated with '.'.
+     */
+    private final ConcurrentHashMap<String, String> methodNames;
+
+    /**
+     * The new field names, indexed by owner, old name and descriptor, separated with '.'.
+     */
+    private final ConcurrentHashMap<String, String> fieldNames;
+
+    /**
+     * Constructs a new {@link ClassHierarchyRemapper}.
+     *
+     * @param remapper       the remapper defining the mapping. Each field or method mapping only
+     *                       needs to be defined for the class declaring the member.
+     * @param classHierarchy the class hierarchy used to find the super classes and interfaces of a
+     *                       class.
+     */
+    public ClassHierarchyRemapper(final Remapper remapper, final ClassHierarchy classHierarchy) {
+        this.remapper = remapper;
+        this.classHierarchy = classHierarchy;
+        this.methodNames = new ConcurrentHashMap<String, String>();
+        this.fieldNames = new ConcurrentHashMap<String, String>();
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Resolved methods
+    // -----------------------------------------------------------------------------------------------
+
+    @Override
+    public String mapMethodName(final String owner, final String name, final String desc) {
+        String newName = remapper.mapMethodName(owner, name, desc);
+        if (!newName.equals(name) || name.charAt(0) == '<' || owner.charAt(0) == '[') {
+            // Constructors and static initializers are not inherited, and arrays only inherit the
+            // methods of Object, Cloneable and Serializable, which are not renamed.
+            return newName;
+        }
+        String key = owner + '.' + name + desc;
+        newName = methodNames.get(key);
+        if (newName == null) {
+            newName = resolveMethodName(owner, name, desc, new HashSet<String>());
+            if (newName == null) {
+                newName = name;
+            }
+            methodNames.put(key, newName);
+        }
+        return newName;
+    }
+
+    @Override
+    public String mapFieldName(final String owner, final String name, final String desc) {
+        String newName = remapper.mapFieldName(owner, name, desc);
+        if (!newName.equals(name) || owner.charAt(0) == '[') {
+            return newName;
+        }
+        String key = owner + '.' + name + '.' + desc;
+        newName = fieldNames.get(key);
+        if (newName == null) {
+            newName = resolveFieldName(owner, name, desc, new HashSet<String>());
+            if (newName == null) {
+                newName = name;
+            }
+            fieldNames.put(key, newName);
+        }
+        return newName;
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Delegated methods
+    // -----------------------------------------------------------------------------------------------
+
+    @Override
+    public String mapDesc(final String desc) {
+        return remapper.mapDesc(desc);
+    }
+
+    @Override
+    public String mapType(final String type) {
+        return remapper.mapType(type);
+    }
+
+    @Override
+    public String[] mapTypes(final String[] types) {
+        return remapper.mapTypes(types);
+    }
+
+    @Override
+    public String mapMethodDesc(final String desc) {
+        return remapper.mapMethodDesc(desc);
+    }
+
+    @Override
+    public String mapSignature(final String signature, final boolean typeSignature) {
+        return remapper.mapSignature(signature, typeSignature);
+    }
+
+    @Override
+    public String mapInvokeDynamicMethodName(final String name, final String desc) {
+        return remapper.mapInvokeDynamicMethodName(name, desc);
+    }
+
+    @Override
+    public String mapPackageName(final String name) {
+        return remapper.mapPackageName(name);
+    }
+
+    @Override
+    public String mapModuleName(final String name) {
+        return remapper.mapModuleName(name);
+    }
+
+    @Override
+    public String map(final String typeName) {
+        return remapper.map(typeName);
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Utility methods
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Looks for a mapping of the given method in the super classes and interfaces of the given
+     * class, in this order, and recursively.
+     *
+     * @param owner          the internal name of a class.
+     * @param name           the name of a method of this class.
+     * @param desc           the descriptor of this method.
+     * @param visitedClasses the classes which have already been visited.
+     * @return the new method name defined in a super class or interface of owner, or <tt>null</tt>
+     * if there is none.
+     */
+    private String resolveMethodName(
+            final String owner,
+            final String name,
+            final String desc,
+            final HashSet<String> visitedClasses) {
+        String superClass = getSuperClass(owner);
+        while (superClass != null && visitedClasses.add(superClass)) {
+            String newName = remapper.mapMethodName(superClass, name, desc);
+            if (!newName.equals(name)) {
+                return newName;
+            }
+            superClass = getSuperClass(superClass);
+        }
+        String currentClass = owner;
+        while (currentClass != null) {
+            for (String interfaceName : getInterfaces(currentClass)) {
+                if (visitedClasses.add(interfaceName)) {
+                    String newName = remapper.mapMethodName(interfaceName, name, desc);
+                    if (newName.equals(name)) {
+                        newName = resolveMethodName(interfaceName, name, desc, visitedClasses);
+                    }
+                    if (newName != null && !newName.equals(name)) {
+                        return newName;
+                    }
+                }
+            }
+            currentClass = getSuperClass(currentClass);
+        }
+        return null;
+    }
+
+    /**
+     * Looks for a mapping of the given field in the interfaces and super classes of the given class,
+     * recursively, in the order used by the Java Virtual Machine to resolve fields.
+     *
+     * @param owner          the internal name of a class.
+     * @param name           the name of a field of this class.
+     * @param desc           the descriptor of this field.
+     * @param visitedClasses the classes which have already been visited.
+     * @return the new field name defined in a super class or interface of owner, or <tt>null</tt>
+     * if there is none.
+     */
+    private String resolveFieldName(
+            final String owner,
+            final String name,
+            final String desc,
+            final HashSet<String> visitedClasses) {
+        for (String interfaceName : getInterfaces(owner)) {
+            String newName = resolveInheritedFieldName(interfaceName, name, desc, visitedClasses);
+            if (newName != null) {
+                return newName;
+            }
+        }
+        String superClass = getSuperClass(owner);
+        if (superClass != null) {
+            return resolveInheritedFieldName(superClass, name, desc, visitedClasses);
+        }
+        return null;
+    }
+
+    /**
+     * Looks for a mapping of the given field in the given class, or in its interfaces and super
+     * classes.
+     *
+     * @param owner          the internal name of a class.
+     * @param name           the name of a field.
+     * @param desc           the descriptor of this field.
+     * @param visitedClasses the classes which have already been visited.
+     * @return the new field name defined in owner or in one of its super classes or interfaces, or
+     * <tt>null</tt> if there is none.
+     */
+    private String resolveInheritedFieldName(
+            final String owner,
+            final String name,
+            final String desc,
+            final HashSet<String> visitedClasses) {
+        if (!visitedClasses.add(owner)) {
+            return null;
+        }
+        String newName = remapper.mapFieldName(owner, name, desc);
+        if (!newName.equals(name)) {
+            return newName;
+        }
+        return resolveFieldName(owner, name, desc, visitedClasses);
+    }
+
+    /**
+     * Returns the super class of the given class.
+     *
+     * @param type the internal name of a class.
+     * @return the internal name of the super class of type, or <tt>null</tt> if type is {@link
+     * Object} or can not be found in {@link #classHierarchy}.
+     */
+    private String getSuperClass(final String type) {
+        try {
+            return classHierarchy.getSuperClass(type);
+        } catch (TypeNotPresentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the interfaces directly implemented by the given class.
+     *
+     * @param type the internal name of a class.
+     * @return the internal names of the interfaces directly implemented by type, or an empty array
+     * if type can not be found in {@link #classHierarchy}.
+     */
+    private String[] getInterfaces(final String type) {
+        try {
+            return classHierarchy.getInterfaces(type);
+        } catch (TypeNotPresentException e) {
+            return new String[0];
+        }
+    }
+}
@@ -0,0 +1,171 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.objectweb.asm.commons;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Remapper} using a {@link Map} to define its mapping, with the same keys as in {@link
+ * SimpleRemapper}:
+ * <p>
+ * <ul>
+ * <li>internal class names, for the classes to be renamed,
+ * <li>'owner.name', for the fields to be renamed, where 'owner' is the internal name of the class
+ * declaring the field,
+ * <li>'owner.name' followed by a method descriptor, for the methods to be renamed,
+ * <li>'.name' followed by a method descriptor, for the invokedynamic method names to be renamed.
+ * </ul>
+ * <p>
+ * <p>Unlike in {@link SimpleRemapper}, the fields and methods to be renamed are indexed by owner
+ * when this remapper is created, so that references to the members of classes without any renamed
+ * member are remapped with a single hash lookup, and without creating any key string. The given map
+ * is copied for this purpose, which means that later changes to this map are not taken into
+ * account. Also, {@link #mapFieldName}, {@link #mapMethodName} and {@link
+ * #mapInvokeDynamicMethodName} do not use {@link #map}, so overriding this method only changes the
+ * way class names are remapped.
+ */
+public class IndexedRemapper extends Remapper {
+
+    /**
+     * A copy of the mapping given to the constructor.
+     */
+    private final HashMap<String, String> mapping;
+
+    /**
+     * The fields and methods to be renamed, indexed by owner.
+     */
+    private final HashMap<String, OwnerMapping> ownerMappings;
+
+    /**
+     * Constructs a new {@link IndexedRemapper}.
+     *
+     * @param mapping the mapping to use. This map is copied, so later changes to it have no effect
+     *                on this remapper.
+     */
+    public IndexedRemapper(Map<String, String> mapping) {
+        this.mapping = new HashMap<String, String>(mapping);
+        this.ownerMappings = new HashMap<String, OwnerMapping>();
+        for (Map.Entry<String, String> entry : this.mapping.entrySet()) {
+            addMemberMapping(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Constructs a new {@link IndexedRemapper} with a single mapping.
+     *
+     * @param oldName a class name, or a field or method key (see the class documentation).
+     * @param newName the new name corresponding to <tt>oldName</tt>.
+     */
+    public IndexedRemapper(String oldName, String newName) {
+        this.mapping = new HashMap<String, String>();
+        this.mapping.put(oldName, newName);
+        this.ownerMappings = new HashMap<String, OwnerMapping>();
+        addMemberMapping(oldName, newName);
+    }
+
+    @Override
+    public String mapMethodName(String owner, String name, String desc) {
+        OwnerMapping ownerMapping = ownerMappings.get(owner);
+        String s = ownerMapping == null ? null : ownerMapping.getMethodName(name, desc);
+        return s == null ? name : s;
+    }
+
+    @Override
+    public String mapInvokeDynamicMethodName(String name, String desc) {
+        OwnerMapping ownerMapping = ownerMappings.get("");
+        String s = ownerMapping == null ? null : ownerMapping.getMethodName(name, desc);
+        return s == null ? name : s;
+    }
+
+    @Override
+    public String mapFieldName(String owner, String name, String desc) {
+        OwnerMapping ownerMapping = ownerMappings.get(owner);
+        String s = ownerMapping == null ? null : ownerMapping.fieldNames.get(name);
+        return s == null ? name : s;
+    }
+
+    @Override
+    public String map(String key) {
+        return mapping.get(key);
+    }
+
+    /**
+     * Adds the given mapping to {@link #ownerMappings}, if it is a field or method mapping.
+     *
+     * @param key   a key of {@link #mapping}.
+     * @param value the corresponding value.
+     */
+    private void addMemberMapping(String key, String value) {
+        int descIndex = key.indexOf('(');
+        int dotIndex = key.lastIndexOf('.', descIndex == -1 ? key.length() : descIndex);
+        if (dotIndex == -1) {
+            return;
+        }
+        String owner = key.substring(0, dotIndex);
+        OwnerMapping ownerMapping = ownerMappings.get(owner);
+        if (ownerMapping == null) {
+            ownerMapping = new OwnerMapping();
+            ownerMappings.put(owner, ownerMapping);
+        }
+        if (descIndex == -1) {
+            ownerMapping.fieldNames.put(key.substring(dotIndex + 1), value);
+        } else {
+            String name = key.substring(dotIndex + 1, descIndex);
+            HashMap<String, String> methodNames = ownerMapping.methodNames.get(name);
+            if (methodNames == null) {
+                methodNames = new HashMap<String, String>();
+                ownerMapping.methodNames.put(name, methodNames);
+            }
+            methodNames.put(key.substring(descIndex), value);
+        }
+    }
+
+    /**
+     * The fields and methods of a class to be renamed.
+     */
+    private static final class OwnerMapping {
+
+        /**
+         * The new field names, indexed by old field name.
+         */
+        final HashMap<String, String> fieldNames = new HashMap<String, String>();
+
+        /**
+         * The new method names, indexed by old method name and method descriptor.
+         */
+        final HashMap<String, HashMap<String, String>> methodNames =
+                new HashMap<String, HashMap<String, String>>();
+
+        String getMethodName(String name, String desc) {
+            HashMap<String, String> newNames = methodNames.get(name);
+            return newNames == null ? null : newNames.get(desc);
+        }
+    }
+}
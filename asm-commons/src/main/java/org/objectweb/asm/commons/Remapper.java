@@ -48,21 +48,33 @@ import org.objectweb.asm.signature.SignatureWriter;
 public abstract class Remapper {
 
     public String mapDesc(String desc) {
-        Type t = Type.getType(desc);
-        switch (t.getSort()) {
-            case Type.ARRAY:
-                String s = mapDesc(t.getElementType().getDescriptor());
-                for (int i = 0; i < t.getDimensions(); ++i) {
-                    s = '[' + s;
-                }
-                return s;
-            case Type.OBJECT:
-                String newType = map(t.getInternalName());
-                if (newType != null) {
-                    return 'L' + newType + ';';
-                }
+        if (desc.charAt(0) == 'L') {
+            String internalName = desc.substring(1, desc.length() - 1);
+            String newInternalName = map(internalName);
+            if (newInternalName == null || newInternalName.equals(internalName)) {
+                return desc;
+            }
+            return 'L' + newInternalName + ';';
         }
-        return desc;
+        if (desc.charAt(0) != '[') {
+            return desc;
+        }
+        int dimensions = 1;
+        while (desc.charAt(dimensions) == '[') {
+            ++dimensions;
+        }
+        // The element type is remapped with mapDesc, so that subclasses overriding this method also
+        // remap the array element types.
+        String elementDesc = desc.substring(dimensions);
+        String newElementDesc = mapDesc(elementDesc);
+        if (newElementDesc.equals(elementDesc)) {
+            return desc;
+        }
+        StringBuilder sb = new StringBuilder(dimensions + newElementDesc.length());
+        for (int i = 0; i < dimensions; ++i) {
+            sb.append('[');
+        }
+        return sb.append(newElementDesc).toString();
     }
 
     private Type mapType(Type t) {
@@ -114,18 +126,33 @@ public abstract class Remapper {
             return desc;
         }
 
-        Type[] args = Type.getArgumentTypes(desc);
-        StringBuilder sb = new StringBuilder("(");
-        for (int i = 0; i < args.length; i++) {
-            sb.append(mapDesc(args[i].getDescriptor()));
+        // Scan the descriptor in a single pass, and only build a new one if a type is remapped. The
+        // content of desc is copied to sb lazily, up to copiedLength, when a type is remapped.
+        StringBuilder sb = null;
+        int copiedLength = 0;
+        int currentOffset = 1;
+        while (currentOffset < desc.length()) {
+            int typeOffset = currentOffset;
+            while (desc.charAt(currentOffset) == '[') {
+                ++currentOffset;
+            }
+            if (desc.charAt(currentOffset++) == 'L') {
+                currentOffset = desc.indexOf(';', currentOffset) + 1;
+                String typeDesc = desc.substring(typeOffset, currentOffset);
+                String newTypeDesc = mapDesc(typeDesc);
+                if (!newTypeDesc.equals(typeDesc)) {
+                    if (sb == null) {
+                        sb = new StringBuilder(desc.length() + newTypeDesc.length());
+                    }
+                    sb.append(desc, copiedLength, typeOffset).append(newTypeDesc);
+                    copiedLength = currentOffset;
+                }
+            }
         }
-        Type returnType = Type.getReturnType(desc);
-        if (returnType == Type.VOID_TYPE) {
-            sb.append(")V");
-            return sb.toString();
+        if (sb == null) {
+            return desc;
         }
-        sb.append(')').append(mapDesc(returnType.getDescriptor()));
-        return sb.toString();
+        return sb.append(desc, copiedLength, desc.length()).toString();
     }
 
     public Object mapValue(Object value) {
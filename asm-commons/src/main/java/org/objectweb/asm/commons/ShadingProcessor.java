@@ -0,0 +1,210 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A {@link ClassFileProcessor} to shade (or relocate) the classes of a jar file or of a directory,
+ * i.e. to rename them with a {@link Remapper}. The classes are transformed with a {@link
+ * ClassRemapper}, and are moved to the entries corresponding to their new names. The service
+ * provider configuration files (in META-INF/services) are also renamed and transformed, to use the
+ * new class names. The other resources are copied unchanged. The directory entries are removed,
+ * since the classes they contain may be moved to other directories: in a processed directory, the
+ * output directories are those containing the output files.
+ * <p>
+ * <p>The given {@link Remapper} is wrapped in a {@link CachingRemapper} shared between all the
+ * classes, so that the descriptors and signatures which are used in several classes are only
+ * remapped once. The given {@link Remapper} must therefore be thread safe if an {@link Executor} is
+ * used (a {@link SimpleRemapper} is thread safe, as long as its mapping is not modified).
+ */
+public class ShadingProcessor extends ClassFileProcessor {
+
+    /**
+     * The prefix of the names of the service provider configuration files.
+     */
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+
+    /**
+     * The prefix of the names of the versioned entries of multi-release jar files.
+     */
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /**
+     * The charset used to encode the service provider configuration files.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The remapper used to rename the classes, shared between all the classes.
+     */
+    protected final Remapper remapper;
+
+    /**
+     * Constructs a new {@link ShadingProcessor} which transforms the classes in the calling thread.
+     *
+     * @param remapper the remapper used to rename the classes.
+     */
+    public ShadingProcessor(final Remapper remapper) {
+        this(remapper, null, DEFAULT_MAX_PENDING_ENTRIES);
+    }
+
+    /**
+     * Constructs a new {@link ShadingProcessor}.
+     *
+     * @param remapper          the remapper used to rename the classes. It must be thread safe if
+     *                          executor is not <tt>null</tt>.
+     * @param executor          the executor used to transform the classes, or <tt>null</tt> to
+     *                          transform them in the calling thread.
+     * @param maxPendingEntries the maximum number of entries which can be read, but not yet
+     *                          written. This bounds the memory used to process an archive, whatever
+     *                          its size.
+     */
+    public ShadingProcessor(
+            final Remapper remapper, final Executor executor, final int maxPendingEntries) {
+        super(0, 0, executor, maxPendingEntries);
+        this.remapper = new CachingRemapper(remapper);
+    }
+
+    @Override
+    protected ClassVisitor createClassVisitor(
+            final String entryName, final ClassVisitor classVisitor) {
+        return new ClassRemapper(classVisitor, remapper);
+    }
+
+    /**
+     * Returns the class writer to be used to write a transformed class. This implementation does
+     * not copy the constant pool of the given reader, which contains the old class names.
+     *
+     * @param classReader the reader of the class to be transformed.
+     * @return the class writer to be used to write the transformed class.
+     */
+    @Override
+    protected ClassWriter createClassWriter(final ClassReader classReader) {
+        return new ClassWriter(writerFlags);
+    }
+
+    /**
+     * Transforms a resource. This implementation remaps the class names in the service provider
+     * configuration files, and returns the other resources unchanged.
+     *
+     * @param entryName the name of the entry containing the resource, relative to the root of the
+     *                  processed jar or directory, and using '/' as separator.
+     * @param content   the content of the resource.
+     * @return the transformed content.
+     */
+    @Override
+    protected byte[] processResource(final String entryName, final byte[] content) {
+        if (!entryName.startsWith(SERVICES_PREFIX)) {
+            return content;
+        }
+        String serviceProviders = UTF_8.decode(ByteBuffer.wrap(content)).toString();
+        StringBuilder newServiceProviders = new StringBuilder(serviceProviders.length());
+        boolean changed = false;
+        int lineStart = 0;
+        while (lineStart < serviceProviders.length()) {
+            int lineEnd = serviceProviders.indexOf('\n', lineStart);
+            lineEnd = lineEnd == -1 ? serviceProviders.length() : lineEnd + 1;
+            String line = serviceProviders.substring(lineStart, lineEnd);
+            int commentStart = line.indexOf('#');
+            String className =
+                    (commentStart == -1 ? line : line.substring(0, commentStart)).trim();
+            String newClassName = className.length() == 0 ? className : mapClassName(className);
+            if (newClassName.equals(className)) {
+                newServiceProviders.append(line);
+            } else {
+                int classNameStart = line.indexOf(className);
+                newServiceProviders
+                        .append(line, 0, classNameStart)
+                        .append(newClassName)
+                        .append(line, classNameStart + className.length(), line.length());
+                changed = true;
+            }
+            lineStart = lineEnd;
+        }
+        if (!changed) {
+            return content;
+        }
+        ByteBuffer byteBuffer = UTF_8.encode(newServiceProviders.toString());
+        byte[] newContent = new byte[byteBuffer.remaining()];
+        byteBuffer.get(newContent);
+        return newContent;
+    }
+
+    /**
+     * Returns the name under which an entry must be written in the output. This implementation
+     * moves the class files to the entries corresponding to their new names (in the same version
+     * directory for multi-release jar files), renames the service provider configuration files
+     * according to the new names of the services, and removes the directory entries. The other
+     * entries are not renamed.
+     *
+     * @param entryName the name of an entry of the input, relative to the root of the processed jar
+     *                  or directory, and using '/' as separator.
+     * @return the name of the corresponding output entry, or <tt>null</tt> for a directory entry.
+     */
+    @Override
+    protected String getOutputEntryName(final String entryName) {
+        if (entryName.endsWith("/")) {
+            return null;
+        }
+        if (entryName.startsWith(SERVICES_PREFIX)) {
+            String service = entryName.substring(SERVICES_PREFIX.length());
+            return service.length() == 0 ? entryName : SERVICES_PREFIX + mapClassName(service);
+        }
+        if (!isClassFile(entryName)) {
+            return entryName;
+        }
+        int classNameStart = 0;
+        if (entryName.startsWith(VERSIONS_PREFIX)) {
+            classNameStart = entryName.indexOf('/', VERSIONS_PREFIX.length()) + 1;
+        }
+        String className = entryName.substring(classNameStart, entryName.length() - 6);
+        String newClassName = remapper.map(className);
+        if (newClassName == null || newClassName.equals(className)) {
+            return entryName;
+        }
+        return entryName.substring(0, classNameStart) + newClassName + ".class";
+    }
+
+    /**
+     * Remaps a fully qualified class name.
+     *
+     * @param className a fully qualified class name, using '.' as separator.
+     * @return the new fully qualified name of the class, using '.' as separator.
+     */
+    private String mapClassName(final String className) {
+        String newInternalName = remapper.map(className.replace('.', '/'));
+        return newInternalName == null ? className : newInternalName.replace('/', '.');
+    }
+}
@@ -0,0 +1,110 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * CachingRemapper tests.
+ */
+public class CachingRemapperTest {
+
+    @Test
+    public void testConstructor() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new CachingRemapper(new SimpleRemapper(new HashMap<String, String>()), 0));
+    }
+
+    @Test
+    public void testCachingRemapper() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("pkg/A", "pkg/B");
+        CountingRemapper countingRemapper = new CountingRemapper(mapping);
+        CachingRemapper cachingRemapper = new CachingRemapper(countingRemapper, 2);
+
+        assertEquals("Lpkg/B;", cachingRemapper.mapDesc("Lpkg/A;"));
+        assertEquals("Lpkg/B;", cachingRemapper.mapDesc("Lpkg/A;"));
+        assertEquals(1, countingRemapper.descriptorCount);
+        assertEquals("(Lpkg/B;)V", cachingRemapper.mapMethodDesc("(Lpkg/A;)V"));
+        assertEquals("(Lpkg/B;)V", cachingRemapper.mapMethodDesc("(Lpkg/A;)V"));
+        assertEquals(1, countingRemapper.methodDescriptorCount);
+        // The cache is full, and must be cleared when a new descriptor is added.
+        assertEquals("I", cachingRemapper.mapDesc("I"));
+        assertEquals("Lpkg/B;", cachingRemapper.mapDesc("Lpkg/A;"));
+        assertEquals("(Lpkg/B;)V", cachingRemapper.mapMethodDesc("(Lpkg/A;)V"));
+        assertEquals(2, countingRemapper.methodDescriptorCount);
+
+        String signature = "Ljava/util/List<Lpkg/A;>;";
+        assertEquals("Ljava/util/List<Lpkg/B;>;", cachingRemapper.mapSignature(signature, true));
+        assertEquals("Ljava/util/List<Lpkg/B;>;", cachingRemapper.mapSignature(signature, true));
+        assertEquals(1, countingRemapper.signatureCount);
+        assertNull(cachingRemapper.mapSignature(null, false));
+
+        assertEquals("pkg/B", cachingRemapper.mapType("pkg/A"));
+        assertEquals("pkg/B", cachingRemapper.map("pkg/A"));
+    }
+
+    private static class CountingRemapper extends SimpleRemapper {
+
+        int descriptorCount;
+
+        int methodDescriptorCount;
+
+        int signatureCount;
+
+        CountingRemapper(final Map<String, String> mapping) {
+            super(mapping);
+        }
+
+        @Override
+        public String mapDesc(final String desc) {
+            ++descriptorCount;
+            return super.mapDesc(desc);
+        }
+
+        @Override
+        public String mapMethodDesc(final String desc) {
+            ++methodDescriptorCount;
+            return super.mapMethodDesc(desc);
+        }
+
+        @Override
+        public String mapSignature(final String signature, final boolean typeSignature) {
+            ++signatureCount;
+            return super.mapSignature(signature, typeSignature);
+        }
+    }
+}
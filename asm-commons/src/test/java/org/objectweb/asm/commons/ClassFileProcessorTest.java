@@ -0,0 +1,288 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/**
+ * ClassFileProcessor tests.
+ */
+public class ClassFileProcessorTest extends AsmTest {
+
+    /**
+     * A processor which makes all the classes public.
+     */
+    static class PublicClassProcessor extends ClassFileProcessor {
+
+        PublicClassProcessor(final ExecutorService executor, final int maxPendingEntries) {
+            super(0, 0, executor, maxPendingEntries);
+        }
+
+        @Override
+        protected ClassVisitor createClassVisitor(
+                final String entryName, final ClassVisitor classVisitor) {
+            return new ClassVisitor(Opcodes.ASM6, classVisitor) {
+                @Override
+                public void visit(
+                        final int version,
+                        final int access,
+                        final String name,
+                        final String signature,
+                        final String superName,
+                        final String[] interfaces) {
+                    super.visit(
+                            version, access | Opcodes.ACC_PUBLIC, name, signature, superName, interfaces);
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ClassFileProcessor(0, 0, null, 0));
+    }
+
+    @Test
+    public void testProcessJar() throws IOException {
+        byte[] jar = createJar();
+        byte[] expectedOutput = null;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int maxPendingEntries : new int[] {1, 3, 1000}) {
+                for (ExecutorService executorService : new ExecutorService[] {null, executor}) {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    new PublicClassProcessor(executorService, maxPendingEntries)
+                            .process(new ByteArrayInputStream(jar), output);
+                    if (expectedOutput == null) {
+                        expectedOutput = output.toByteArray();
+                    } else {
+                        assertArrayEquals(expectedOutput, output.toByteArray());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(expectedOutput));
+        List<String> entryNames = new ArrayList<String>();
+        ZipEntry zipEntry;
+        while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+            entryNames.add(zipEntry.getName());
+            if (zipEntry.getName().endsWith(".class")) {
+                ClassReader classReader = new ClassReader(zipInputStream);
+                assertEquals(
+                        Opcodes.ACC_PUBLIC, classReader.getAccess() & Opcodes.ACC_PUBLIC, zipEntry.getName());
+            }
+        }
+        List<String> expectedEntryNames = new ArrayList<String>();
+        expectedEntryNames.add("META-INF/");
+        expectedEntryNames.add("META-INF/MANIFEST.MF");
+        for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+            expectedEntryNames.add(precompiledClass.getInternalName() + ".class");
+        }
+        assertEquals(expectedEntryNames, entryNames);
+    }
+
+    @Test
+    public void testProcessDirectory() throws IOException {
+        File inputDirectory = Files.createTempDirectory("input").toFile();
+        File outputDirectory = Files.createTempDirectory("output").toFile();
+        File inputJar = new File(inputDirectory.getParentFile(), inputDirectory.getName() + ".jar");
+        File outputJar = new File(outputDirectory.getParentFile(), outputDirectory.getName() + ".jar");
+        try {
+            for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+                File file = new File(inputDirectory, precompiledClass.getInternalName() + ".class");
+                file.getParentFile().mkdirs();
+                Files.write(file.toPath(), precompiledClass.getBytes());
+            }
+            File resource = new File(inputDirectory, "resource.txt");
+            Files.write(resource.toPath(), new byte[] {1, 2, 3});
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                new PublicClassProcessor(executor, 2).process(inputDirectory, outputDirectory);
+            } finally {
+                executor.shutdown();
+            }
+
+            assertArrayEquals(
+                    new byte[] {1, 2, 3}, Files.readAllBytes(new File(outputDirectory, "resource.txt").toPath()));
+            for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+                File file = new File(outputDirectory, precompiledClass.getInternalName() + ".class");
+                ClassReader classReader = new ClassReader(Files.readAllBytes(file.toPath()));
+                assertEquals(Opcodes.ACC_PUBLIC, classReader.getAccess() & Opcodes.ACC_PUBLIC);
+            }
+
+            byte[] jar = createJar();
+            FileOutputStream outputStream = new FileOutputStream(inputJar);
+            outputStream.write(jar);
+            outputStream.close();
+            new PublicClassProcessor(null, 2).process(inputJar, outputJar);
+            ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
+            new PublicClassProcessor(null, 2).process(new ByteArrayInputStream(jar), expectedOutput);
+            assertArrayEquals(expectedOutput.toByteArray(), Files.readAllBytes(outputJar.toPath()));
+        } finally {
+            delete(inputDirectory);
+            delete(outputDirectory);
+            inputJar.delete();
+            outputJar.delete();
+        }
+        assertFalse(inputDirectory.exists());
+    }
+
+    @Test
+    public void testRemoveClasses() throws IOException {
+        ClassFileProcessor classFileProcessor =
+                new ClassFileProcessor(0, 0) {
+                    @Override
+                    protected byte[] processClass(final String entryName, final byte[] classFile) {
+                        return null;
+                    }
+                };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        classFileProcessor.process(new ByteArrayInputStream(createJar()), output);
+        ZipInputStream zipInputStream =
+                new ZipInputStream(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals("META-INF/", zipInputStream.getNextEntry().getName());
+        assertEquals("META-INF/MANIFEST.MF", zipInputStream.getNextEntry().getName());
+        assertEquals(null, zipInputStream.getNextEntry());
+    }
+
+    @Test
+    public void testProcessingError() {
+        ClassFileProcessor classFileProcessor =
+                new ClassFileProcessor(0, 0) {
+                    @Override
+                    protected ClassWriter createClassWriter(final ClassReader classReader) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+        assertThrows(
+                UnsupportedOperationException.class,
+                () ->
+                        classFileProcessor.process(
+                                new ByteArrayInputStream(createJar()), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testProcessingErrorCancelsPendingTasks() {
+        // An executor which only runs the first task, and keeps the others pending.
+        List<FutureTask<?>> pendingTasks = new ArrayList<FutureTask<?>>();
+        Executor executor =
+                runnable -> {
+                    if (pendingTasks.isEmpty()) {
+                        runnable.run();
+                    }
+                    pendingTasks.add((FutureTask<?>) runnable);
+                };
+        ClassFileProcessor classFileProcessor =
+                new ClassFileProcessor(0, 0, executor, 1000) {
+                    @Override
+                    protected ClassWriter createClassWriter(final ClassReader classReader) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+        assertThrows(
+                UnsupportedOperationException.class,
+                () ->
+                        classFileProcessor.process(
+                                new ByteArrayInputStream(createJar()), new ByteArrayOutputStream()));
+        assertTrue(pendingTasks.size() > 1);
+        for (FutureTask<?> pendingTask : pendingTasks.subList(1, pendingTasks.size())) {
+            assertTrue(pendingTask.isCancelled());
+        }
+    }
+
+    private static byte[] createJar() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("META-INF/", null);
+        entries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+            entries.put(precompiledClass.getInternalName() + ".class", precompiledClass.getBytes());
+        }
+        return createJar(entries);
+    }
+
+    /**
+     * Returns a jar containing the given entries, in iteration order. Entries with a <tt>null</tt>
+     * content, such as directories, are written without any data.
+     */
+    static byte[] createJar(final Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(output);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+            if (entry.getValue() != null) {
+                zipOutputStream.write(entry.getValue());
+            }
+            zipOutputStream.closeEntry();
+        }
+        zipOutputStream.close();
+        return output.toByteArray();
+    }
+
+    /** Deletes the given file or directory, recursively. */
+    static void delete(final File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,176 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * ClassHierarchyRemapper tests.
+ */
+public class ClassHierarchyRemapperTest implements Opcodes {
+
+    private ClassHierarchy classHierarchy;
+
+    private CountingRemapper countingRemapper;
+
+    private ClassHierarchyRemapper remapper;
+
+    @BeforeEach
+    public void setUp() {
+        classHierarchy = new ClassHierarchy();
+        classHierarchy.addClass("I", ACC_INTERFACE, "java/lang/Object", null);
+        classHierarchy.addClass("J", ACC_INTERFACE, "java/lang/Object", new String[] {"I"});
+        classHierarchy.addClass("A", ACC_PUBLIC, "java/lang/Object", null);
+        classHierarchy.addClass("B", ACC_PUBLIC, "A", new String[] {"J"});
+        classHierarchy.addClass("C", ACC_PUBLIC, "B", null);
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("A", "a");
+        mapping.put("A.m()V", "n");
+        mapping.put("A.f", "g");
+        mapping.put("I.run()V", "go");
+        mapping.put("I.CONSTANT", "K");
+        mapping.put("C.m()V", "o");
+        countingRemapper = new CountingRemapper(mapping);
+        remapper = new ClassHierarchyRemapper(countingRemapper, classHierarchy);
+    }
+
+    @Test
+    public void testMapMethodName() {
+        assertEquals("n", remapper.mapMethodName("A", "m", "()V"));
+        assertEquals("n", remapper.mapMethodName("B", "m", "()V"));
+        assertEquals("o", remapper.mapMethodName("C", "m", "()V"));
+        assertEquals("m", remapper.mapMethodName("B", "m", "(I)V"));
+        assertEquals("go", remapper.mapMethodName("J", "run", "()V"));
+        assertEquals("go", remapper.mapMethodName("C", "run", "()V"));
+        assertEquals("<init>", remapper.mapMethodName("C", "<init>", "()V"));
+        assertEquals("toString", remapper.mapMethodName("C", "toString", "()Ljava/lang/String;"));
+        assertEquals("m", remapper.mapMethodName("Unknown", "m", "()V"));
+        assertEquals("clone", remapper.mapMethodName("[LA;", "clone", "()Ljava/lang/Object;"));
+    }
+
+    @Test
+    public void testMapFieldName() {
+        assertEquals("g", remapper.mapFieldName("A", "f", "I"));
+        assertEquals("g", remapper.mapFieldName("C", "f", "I"));
+        assertEquals("K", remapper.mapFieldName("C", "CONSTANT", "I"));
+        assertEquals("K", remapper.mapFieldName("J", "CONSTANT", "I"));
+        assertEquals("h", remapper.mapFieldName("C", "h", "I"));
+    }
+
+    @Test
+    public void testMapFieldNameDependsOnDescriptor() {
+        ClassHierarchyRemapper descriptorRemapper =
+                new ClassHierarchyRemapper(
+                        new Remapper() {
+                            @Override
+                            public String mapFieldName(
+                                    final String owner, final String name, final String desc) {
+                                return owner.equals("A") && name.equals("f") && desc.equals("I")
+                                        ? "g"
+                                        : name;
+                            }
+                        },
+                        classHierarchy);
+        assertEquals("g", descriptorRemapper.mapFieldName("C", "f", "I"));
+        assertEquals("f", descriptorRemapper.mapFieldName("C", "f", "J"));
+    }
+
+    @Test
+    public void testMapMethodNameDoesNotKnowAccessFlags() {
+        // Even if D.m()V is a private or static method, it is renamed like A.m()V. C.m()V is not,
+        // because it has its own mapping.
+        classHierarchy.addClass("D", ACC_PUBLIC, "B", null);
+        assertEquals("n", remapper.mapMethodName("D", "m", "()V"));
+        assertEquals("o", remapper.mapMethodName("C", "m", "()V"));
+    }
+
+    @Test
+    public void testResolutionIsCached() {
+        assertEquals("go", remapper.mapMethodName("C", "run", "()V"));
+        int methodNameCount = countingRemapper.methodNameCount;
+        assertEquals("go", remapper.mapMethodName("C", "run", "()V"));
+        assertEquals(methodNameCount + 1, countingRemapper.methodNameCount);
+    }
+
+    @Test
+    public void testClassRemapper() {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(V1_8, ACC_PUBLIC, "D", null, "C", null);
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "m", "()V", null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, "D", "f", "I");
+        methodVisitor.visitInsn(POP);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "B", "m", "()V", false);
+        methodVisitor.visitInsn(RETURN);
+        methodVisitor.visitMaxs(1, 1);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        ClassReader classReader = new ClassReader(classWriter.toByteArray());
+        classHierarchy.addClass(classReader);
+
+        ClassNode classNode = new ClassNode();
+        classReader.accept(new ClassRemapper(classNode, remapper), 0);
+
+        assertEquals("o", classNode.methods.get(0).name);
+        FieldInsnNode fieldInsn = (FieldInsnNode) classNode.methods.get(0).instructions.get(1);
+        assertEquals("g", fieldInsn.name);
+        MethodInsnNode methodInsn = (MethodInsnNode) classNode.methods.get(0).instructions.get(4);
+        assertEquals("n", methodInsn.name);
+    }
+
+    private static class CountingRemapper extends SimpleRemapper {
+
+        int methodNameCount;
+
+        CountingRemapper(final Map<String, String> mapping) {
+            super(mapping);
+        }
+
+        @Override
+        public String mapMethodName(final String owner, final String name, final String desc) {
+            ++methodNameCount;
+            return super.mapMethodName(owner, name, desc);
+        }
+    }
+}
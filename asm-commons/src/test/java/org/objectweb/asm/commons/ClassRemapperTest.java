@@ -277,6 +277,26 @@ public class ClassRemapperTest extends AsmTest implements Opcodes {
                 .when(classParameter.isMoreRecentThanCurrentJdk());
     }
 
+    /**
+     * Tests that classes transformed with a ClassRemapper and a CachingRemapper can be loaded and
+     * instantiated.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testRemapLoadAndInstantiateWithCachingRemapper(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        ClassReader classReader = new ClassReader(classParameter.getBytes());
+        ClassWriter classWriter = new ClassWriter(0);
+        UpperCaseRemapper upperCaseRemapper = new UpperCaseRemapper(classParameter.getInternalName());
+        CachingRemapper cachingRemapper = new CachingRemapper(upperCaseRemapper, 4);
+
+        classReader.accept(new ClassRemapper(classWriter, cachingRemapper), 0);
+        byte[] classFile = classWriter.toByteArray();
+        assertThat(() -> loadAndInstantiate(upperCaseRemapper.getRemappedClassName(), classFile))
+                .succeedsOrThrows(UnsupportedClassVersionError.class)
+                .when(classParameter.isMoreRecentThanCurrentJdk());
+    }
+
     /**
      * Tests that classes transformed with a ClassNode and ClassRemapper can be loaded and
      * instantiated.
@@ -0,0 +1,74 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Remapper tests.
+ */
+public class RemapperTest {
+
+    @Test
+    public void testMapDescReturnsUnchangedDescriptors() {
+        Remapper remapper = new SimpleRemapper("pkg/A", "pkg/B");
+        String desc = "[[Lpkg/C;";
+        String methodDesc = "(I[JLpkg/C;[[Ljava/lang/Object;)Lpkg/C;";
+        assertSame(desc, remapper.mapDesc(desc));
+        assertSame(methodDesc, remapper.mapMethodDesc(methodDesc));
+    }
+
+    @Test
+    public void testMapDesc() {
+        Remapper remapper = new SimpleRemapper("pkg/A", "pkg/LongerName");
+        assertEquals("I", remapper.mapDesc("I"));
+        assertEquals("Lpkg/LongerName;", remapper.mapDesc("Lpkg/A;"));
+        assertEquals("[[Lpkg/LongerName;", remapper.mapDesc("[[Lpkg/A;"));
+        assertEquals(
+                "(I[Lpkg/LongerName;JLpkg/C;Lpkg/LongerName;)[Lpkg/LongerName;",
+                remapper.mapMethodDesc("(I[Lpkg/A;JLpkg/C;Lpkg/A;)[Lpkg/A;"));
+        assertEquals("(Lpkg/LongerName;)V", remapper.mapMethodDesc("(Lpkg/A;)V"));
+        assertEquals("()Lpkg/LongerName;", remapper.mapMethodDesc("()Lpkg/A;"));
+    }
+
+    @Test
+    public void testMapDescRemapsArrayElementTypesWithMapDesc() {
+        Remapper remapper =
+                new Remapper() {
+                    @Override
+                    public String mapDesc(final String desc) {
+                        return desc.equals("Lpkg/A;") ? "Lpkg/B;" : super.mapDesc(desc);
+                    }
+                };
+        assertEquals("[[Lpkg/B;", remapper.mapDesc("[[Lpkg/A;"));
+        assertEquals("([Lpkg/B;)Lpkg/B;", remapper.mapMethodDesc("([Lpkg/A;)Lpkg/A;"));
+    }
+}
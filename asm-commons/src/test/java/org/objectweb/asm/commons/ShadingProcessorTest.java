@@ -0,0 +1,218 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * ShadingProcessor tests.
+ */
+public class ShadingProcessorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String SERVICES = "# Providers\npkg.Impl # default\nother.Impl\n";
+
+    private static final String SHADED_SERVICES =
+            "# Providers\nshaded.pkg.Impl # default\nother.Impl\n";
+
+    @Test
+    public void testProcessJar() throws IOException {
+        byte[] inputJar = ClassFileProcessorTest.createJar(createEntries());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<String, byte[]> outputEntries;
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new ShadingProcessor(createRemapper(), executor, 2)
+                    .process(new ByteArrayInputStream(inputJar), output);
+            outputEntries = readJar(output.toByteArray());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(
+                Arrays.asList(
+                        "META-INF/services/shaded.pkg.Service",
+                        "META-INF/versions/9/shaded/pkg/Impl.class",
+                        "shaded/pkg/Impl.class",
+                        "shaded/pkg/Service.class",
+                        "resource.txt"),
+                Arrays.asList(outputEntries.keySet().toArray()));
+        checkOutputEntries(outputEntries);
+    }
+
+    @Test
+    public void testProcessJarWithDirectoryEntries() throws IOException {
+        Map<String, byte[]> inputEntries = new LinkedHashMap<String, byte[]>();
+        for (String directoryName :
+                new String[] {
+                    "META-INF/", "META-INF/services/", "META-INF/versions/", "META-INF/versions/9/",
+                    "META-INF/versions/9/pkg/", "pkg/"
+                }) {
+            inputEntries.put(directoryName, null);
+        }
+        inputEntries.putAll(createEntries());
+        byte[] inputJar = ClassFileProcessorTest.createJar(inputEntries);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ShadingProcessor(createRemapper()).process(new ByteArrayInputStream(inputJar), output);
+        Map<String, byte[]> outputEntries = readJar(output.toByteArray());
+
+        assertEquals(
+                Arrays.asList(
+                        "META-INF/services/shaded.pkg.Service",
+                        "META-INF/versions/9/shaded/pkg/Impl.class",
+                        "shaded/pkg/Impl.class",
+                        "shaded/pkg/Service.class",
+                        "resource.txt"),
+                Arrays.asList(outputEntries.keySet().toArray()));
+        checkOutputEntries(outputEntries);
+    }
+
+    @Test
+    public void testProcessDirectory() throws IOException {
+        File inputDirectory = Files.createTempDirectory("input").toFile();
+        File outputDirectory = Files.createTempDirectory("output").toFile();
+        try {
+            for (Map.Entry<String, byte[]> entry : createEntries().entrySet()) {
+                File file = new File(inputDirectory, entry.getKey());
+                file.getParentFile().mkdirs();
+                Files.write(file.toPath(), entry.getValue());
+            }
+            new ShadingProcessor(createRemapper()).process(inputDirectory, outputDirectory);
+
+            Map<String, byte[]> outputEntries = new HashMap<String, byte[]>();
+            for (String entryName :
+                    new String[] {
+                        "META-INF/services/shaded.pkg.Service",
+                        "META-INF/versions/9/shaded/pkg/Impl.class",
+                        "resource.txt",
+                        "shaded/pkg/Impl.class",
+                        "shaded/pkg/Service.class"
+                    }) {
+                File file = new File(outputDirectory, entryName);
+                outputEntries.put(entryName, Files.readAllBytes(file.toPath()));
+            }
+            checkOutputEntries(outputEntries);
+            assertFalse(new File(outputDirectory, "pkg").exists());
+            assertFalse(new File(outputDirectory, "META-INF/versions/9/pkg").exists());
+        } finally {
+            ClassFileProcessorTest.delete(inputDirectory);
+            ClassFileProcessorTest.delete(outputDirectory);
+        }
+    }
+
+    private static void checkOutputEntries(final Map<String, byte[]> outputEntries) {
+        assertEquals(
+                SHADED_SERVICES,
+                new String(outputEntries.get("META-INF/services/shaded.pkg.Service"), UTF_8));
+        assertArrayEquals(new byte[] {1, 2, 3}, outputEntries.get("resource.txt"));
+        ClassReader classReader = new ClassReader(outputEntries.get("shaded/pkg/Impl.class"));
+        assertEquals("shaded/pkg/Impl", classReader.getClassName());
+        assertArrayEquals(new String[] {"shaded/pkg/Service"}, classReader.getInterfaces());
+        String versionedEntryName = "META-INF/versions/9/shaded/pkg/Impl.class";
+        classReader = new ClassReader(outputEntries.get(versionedEntryName));
+        assertEquals("shaded/pkg/Impl", classReader.getClassName());
+        // The old class names must not remain in the constant pool.
+        String classFile = new String(outputEntries.get("shaded/pkg/Impl.class"), UTF_8);
+        assertEquals(-1, classFile.replace("shaded/pkg/", "").indexOf("pkg/"));
+    }
+
+    private static Remapper createRemapper() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("pkg/Service", "shaded/pkg/Service");
+        mapping.put("pkg/Impl", "shaded/pkg/Impl");
+        return new SimpleRemapper(mapping);
+    }
+
+    private static Map<String, byte[]> createEntries() {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("META-INF/services/pkg.Service", SERVICES.getBytes(UTF_8));
+        entries.put("META-INF/versions/9/pkg/Impl.class", createClass("pkg/Impl", "pkg/Service"));
+        entries.put("pkg/Impl.class", createClass("pkg/Impl", "pkg/Service"));
+        entries.put("pkg/Service.class", createClass("pkg/Service", null));
+        entries.put("resource.txt", new byte[] {1, 2, 3});
+        return entries;
+    }
+
+    private static byte[] createClass(final String name, final String interfaceName) {
+        ClassWriter classWriter = new ClassWriter(0);
+        if (interfaceName == null) {
+            int access = Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT;
+            classWriter.visit(Opcodes.V1_8, access, name, null, "java/lang/Object", null);
+        } else {
+            classWriter.visit(
+                    Opcodes.V1_8,
+                    Opcodes.ACC_PUBLIC,
+                    name,
+                    null,
+                    "java/lang/Object",
+                    new String[] {interfaceName});
+            classWriter.visitField(Opcodes.ACC_PUBLIC, "f", "L" + name + ";", null, null);
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static Map<String, byte[]> readJar(final byte[] jar) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(jar));
+        ZipEntry zipEntry;
+        while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int bytesRead;
+            while ((bytesRead = zipInputStream.read(buffer, 0, buffer.length)) != -1) {
+                content.write(buffer, 0, bytesRead);
+            }
+            entries.put(zipEntry.getName(), content.toByteArray());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,105 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SimpleRemapper tests.
+ */
+public class SimpleRemapperTest {
+
+    @Test
+    public void testMapClassNames() {
+        SimpleRemapper remapper = new SimpleRemapper("pkg/A", "pkg/B");
+        assertEquals("pkg/B", remapper.map("pkg/A"));
+        assertNull(remapper.map("pkg/C"));
+        assertEquals("f", remapper.mapFieldName("pkg/A", "f", "I"));
+        assertEquals("m", remapper.mapMethodName("pkg/A", "m", "()V"));
+    }
+
+    @Test
+    public void testMapMemberNames() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("pkg/A", "pkg/B");
+        mapping.put("pkg/A.f", "g");
+        mapping.put("pkg/A.m()V", "n");
+        mapping.put("pkg/A.m(I)V", "o");
+        mapping.put(".run()Ljava/lang/Runnable;", "go");
+        SimpleRemapper remapper = new SimpleRemapper(mapping);
+
+        assertEquals("g", remapper.mapFieldName("pkg/A", "f", "I"));
+        assertEquals("h", remapper.mapFieldName("pkg/A", "h", "I"));
+        assertEquals("f", remapper.mapFieldName("pkg/C", "f", "I"));
+        assertEquals("n", remapper.mapMethodName("pkg/A", "m", "()V"));
+        assertEquals("o", remapper.mapMethodName("pkg/A", "m", "(I)V"));
+        assertEquals("m", remapper.mapMethodName("pkg/A", "m", "(J)V"));
+        assertEquals("f", remapper.mapMethodName("pkg/A", "f", "()V"));
+        assertEquals("m", remapper.mapMethodName("pkg/C", "m", "()V"));
+        assertEquals("go", remapper.mapInvokeDynamicMethodName("run", "()Ljava/lang/Runnable;"));
+        assertEquals("run", remapper.mapInvokeDynamicMethodName("run", "()V"));
+        assertEquals("n", remapper.map("pkg/A.m()V"));
+    }
+
+    @Test
+    public void testMapSingleMemberName() {
+        SimpleRemapper remapper = new SimpleRemapper("pkg/A.m()V", "n");
+        assertEquals("n", remapper.mapMethodName("pkg/A", "m", "()V"));
+        assertEquals("m", remapper.mapFieldName("pkg/A", "m", "()V"));
+    }
+
+    @Test
+    public void testMappingChangesAreUsed() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        SimpleRemapper remapper = new SimpleRemapper(mapping);
+        assertEquals("f", remapper.mapFieldName("pkg/A", "f", "I"));
+        mapping.put("pkg/A.f", "g");
+        mapping.put("pkg/A.m()V", "n");
+        assertEquals("g", remapper.mapFieldName("pkg/A", "f", "I"));
+        assertEquals("n", remapper.mapMethodName("pkg/A", "m", "()V"));
+    }
+
+    @Test
+    public void testMemberNamesUseMap() {
+        SimpleRemapper remapper = new SimpleRemapper(new HashMap<String, String>()) {
+            @Override
+            public String map(String key) {
+                return key.startsWith("pkg/A.") ? "renamed" : super.map(key);
+            }
+        };
+        assertEquals("renamed", remapper.mapFieldName("pkg/A", "f", "I"));
+        assertEquals("renamed", remapper.mapMethodName("pkg/A", "m", "()V"));
+        assertEquals("m", remapper.mapMethodName("pkg/C", "m", "()V"));
+    }
+}
@@ -32,6 +32,7 @@ import java.util.List;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -298,6 +299,70 @@ public class ClassNode extends ClassVisitor {
         // Nothing to do.
     }
 
+    // -----------------------------------------------------------------------------------------------
+    // Lazy parsing of the method code
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Makes the given {@link ClassReader} visit this class node, but defers the parsing of the code
+     * of each method until its instructions are used. The code of a method is parsed from
+     * classReader, and visited by the corresponding {@link MethodNode}, the first time a method of
+     * its {@link MethodNode#instructions} list is called. <i>Until then, the other fields of this
+     * method node which correspond to the code (such as {@link MethodNode#tryCatchBlocks}, {@link
+     * MethodNode#localVariables}, {@link MethodNode#maxStack} and {@link MethodNode#maxLocals}) are
+     * empty</i>. The time and memory needed to load many classes then depend mostly on the methods
+     * whose code is actually used.
+     * <p>
+     * The given {@link ClassReader} is referenced by this class node until the code of all its
+     * methods has been loaded, and must therefore not be reused to read another class (see {@link
+     * ClassReader#ClassReader(byte[], int, int, ClassReader)}) until then.
+     *
+     * @param classReader         the {@link ClassReader} containing the class to be visited.
+     * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+     *                            the class (see {@link ClassReader#accept(ClassVisitor, Attribute[],
+     *                            int)}).
+     * @param parsingOptions      the options to use to parse this class (see {@link
+     *                            ClassReader#accept(ClassVisitor, Attribute[], int)}).
+     */
+    public void readLazily(
+            final ClassReader classReader,
+            final Attribute[] attributePrototypes,
+            final int parsingOptions) {
+        int firstMethodIndex = methods.size();
+        classReader.accept(this, attributePrototypes, parsingOptions | ClassReader.SKIP_CODE);
+        if ((parsingOptions & ClassReader.SKIP_CODE) != 0) {
+            return;
+        }
+        // Find the method_info structure of each new method node, so that its code can be parsed
+        // without parsing the rest of the class. The method nodes are in the same order as these
+        // structures, but some structures may have no method node (if visitMethod is overridden).
+        int[] methodInfoOffsets = classReader.getMethodInfoOffsets();
+        char[] charBuffer = new char[classReader.getMaxStringLength()];
+        int methodInfoIndex = 0;
+        for (int i = firstMethodIndex; i < methods.size(); ++i) {
+            MethodNode method = methods.get(i);
+            int currentMethodInfoIndex = methodInfoIndex;
+            while (currentMethodInfoIndex < methodInfoOffsets.length) {
+                int methodInfoOffset = methodInfoOffsets[currentMethodInfoIndex++];
+                String name = classReader.readUTF8(methodInfoOffset + 2, charBuffer);
+                String descriptor = classReader.readUTF8(methodInfoOffset + 4, charBuffer);
+                if (method.name.equals(name) && method.desc.equals(descriptor)) {
+                    methodInfoIndex = currentMethodInfoIndex;
+                    if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+                        method.instructions.setCodeLoader(
+                                new CodeLoader(
+                                        classReader,
+                                        methodInfoOffset,
+                                        attributePrototypes,
+                                        parsingOptions,
+                                        method));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
     // -----------------------------------------------------------------------------------------------
     // Accept method
     // -----------------------------------------------------------------------------------------------
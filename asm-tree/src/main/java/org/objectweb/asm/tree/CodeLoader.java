@@ -0,0 +1,126 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link MethodVisitor} which parses the code of a method from a {@link ClassReader}, and sends it
+ * to a {@link MethodNode} whose other elements have already been visited (see {@link
+ * ClassNode#readLazily}). The visit events which precede {@link MethodVisitor#visitCode}, as well
+ * as {@link MethodVisitor#visitEnd}, are therefore not forwarded to the {@link MethodNode}.
+ */
+final class CodeLoader extends MethodVisitor {
+
+    /**
+     * The class reader containing the code of the method.
+     */
+    private final ClassReader classReader;
+
+    /**
+     * The start offset of the method_info structure of the method, in {@link #classReader}.
+     */
+    private final int methodInfoOffset;
+
+    /**
+     * The attribute prototypes to use to parse the code of the method.
+     */
+    private final Attribute[] attributePrototypes;
+
+    /**
+     * The options to use to parse the code of the method.
+     */
+    private final int parsingOptions;
+
+    /**
+     * The method node to which the code of the method must be sent.
+     */
+    private final MethodNode methodNode;
+
+    /**
+     * Constructs a new {@link CodeLoader}.
+     *
+     * @param classReader         the class reader containing the code of the method.
+     * @param methodInfoOffset    the start offset of the method_info structure of the method, in
+     *                            classReader.
+     * @param attributePrototypes the attribute prototypes to use to parse the code of the method.
+     * @param parsingOptions      the options to use to parse the code of the method.
+     * @param methodNode          the method node to which the code of the method must be sent.
+     */
+    CodeLoader(
+            final ClassReader classReader,
+            final int methodInfoOffset,
+            final Attribute[] attributePrototypes,
+            final int parsingOptions,
+            final MethodNode methodNode) {
+        super(Opcodes.ASM6);
+        this.classReader = classReader;
+        this.methodInfoOffset = methodInfoOffset;
+        this.attributePrototypes = attributePrototypes;
+        this.parsingOptions = parsingOptions;
+        this.methodNode = methodNode;
+    }
+
+    /**
+     * Parses the code of the method and sends it to the method node. The other fields and methods of
+     * the class are not parsed.
+     */
+    void load() {
+        classReader.acceptMethod(
+                new ClassVisitor(Opcodes.ASM6) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        return CodeLoader.this;
+                    }
+                },
+                methodInfoOffset,
+                attributePrototypes,
+                parsingOptions);
+    }
+
+    @Override
+    public void visitCode() {
+        // Forward this event and the following ones (except visitEnd) to the method node.
+        mv = methodNode;
+        super.visitCode();
+    }
+
+    @Override
+    public void visitEnd() {
+        mv = null;
+    }
+}
@@ -27,6 +27,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.tree;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
@@ -34,10 +36,17 @@ import org.objectweb.asm.MethodVisitor;
 
 /**
  * A doubly linked list of {@link AbstractInsnNode} objects. <i>This implementation is not thread
- * safe</i>.
+ * safe</i>. This list can also be stored in a compact form, see {@link #pack}.
  */
 public class InsnList {
 
+    /**
+     * The kind of the elements of {@link #packedInsns} which correspond to instruction nodes that are
+     * not packed, but stored as is in {@link #packedObjects}. The other kinds are equal to the
+     * {@link AbstractInsnNode#getType} values of the corresponding instructions.
+     */
+    private static final int UNPACKED_NODE = 0xFF;
+
     /**
      * The number of instructions in this list.
      */
@@ -59,12 +68,35 @@ public class InsnList {
      */
     AbstractInsnNode[] cache;
 
+    /**
+     * The instructions of this list in packed form, or <tt>null</tt> if they are stored in the linked
+     * list starting at {@link #firstInsn}. Each instruction is stored in a header element, containing
+     * its opcode in the high order bits and its kind in the low 8 bits, followed by zero or more
+     * elements for its operands (int values, or indices in {@link #packedObjects}).
+     */
+    private int[] packedInsns;
+
+    /**
+     * The distinct objects referenced from {@link #packedInsns}: strings, constants of LDC
+     * instructions, {@link LabelNode} objects and instruction nodes which are not packed. This array
+     * plays the role of a constant pool for {@link #packedInsns}. It is <tt>null</tt> if and only if
+     * {@link #packedInsns} is <tt>null</tt>.
+     */
+    private Object[] packedObjects;
+
+    /**
+     * The loader which must be used to parse the instructions of this list, the first time they are
+     * used, or <tt>null</tt> if they are already loaded (see {@link ClassNode#readLazily}).
+     */
+    private CodeLoader codeLoader;
+
     /**
      * Returns the number of instructions in this list.
      *
      * @return the number of instructions in this list.
      */
     public int size() {
+        load();
         return size;
     }
 
@@ -74,6 +106,7 @@ public class InsnList {
      * @return the first instruction in this list, or <tt>null</tt> if the list is empty.
      */
     public AbstractInsnNode getFirst() {
+        unpack();
         return firstInsn;
     }
 
@@ -83,6 +116,7 @@ public class InsnList {
      * @return the last instruction in this list, or <tt>null</tt> if the list is empty.
      */
     public AbstractInsnNode getLast() {
+        unpack();
         return lastInsn;
     }
 
@@ -100,6 +134,7 @@ public class InsnList {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
+        unpack();
         if (cache == null) {
             cache = toArray();
         }
@@ -115,6 +150,7 @@ public class InsnList {
      * @return <tt>true</tt> if the given instruction belongs to this list.
      */
     public boolean contains(final AbstractInsnNode insnNode) {
+        unpack();
         AbstractInsnNode currentInsn = firstInsn;
         while (currentInsn != null && currentInsn != insnNode) {
             currentInsn = currentInsn.nextInsn;
@@ -134,6 +170,7 @@ public class InsnList {
      * to test if an instruction belongs to an instruction list or not.
      */
     public int indexOf(final AbstractInsnNode insnNode) {
+        unpack();
         if (cache == null) {
             cache = toArray();
         }
@@ -141,11 +178,17 @@ public class InsnList {
     }
 
     /**
-     * Makes the given visitor visit all the instructions in this list.
+     * Makes the given visitor visit all the instructions in this list. If this list is packed, the
+     * instructions are visited directly from their packed form, without unpacking the list.
      *
      * @param methodVisitor the method visitor that must visit the instructions.
      */
     public void accept(final MethodVisitor methodVisitor) {
+        load();
+        if (packedInsns != null) {
+            acceptPacked(methodVisitor);
+            return;
+        }
         AbstractInsnNode currentInsn = firstInsn;
         while (currentInsn != null) {
             currentInsn.accept(methodVisitor);
@@ -170,6 +213,7 @@ public class InsnList {
      */
     @SuppressWarnings("unchecked")
     public ListIterator<AbstractInsnNode> iterator(final int index) {
+        unpack();
         return new InsnListIterator(index);
     }
 
@@ -179,6 +223,7 @@ public class InsnList {
      * @return an array containing all the instructions in this list.
      */
     public AbstractInsnNode[] toArray() {
+        unpack();
         int currentInsnIndex = 0;
         AbstractInsnNode currentInsn = firstInsn;
         AbstractInsnNode[] insnNodeArray = new AbstractInsnNode[size];
@@ -197,6 +242,7 @@ public class InsnList {
      * @param newInsnNode another instruction, <i>which must not belong to any {@link InsnList}</i>.
      */
     public void set(final AbstractInsnNode oldInsnNode, final AbstractInsnNode newInsnNode) {
+        unpack();
         AbstractInsnNode nextInsn = oldInsnNode.nextInsn;
         newInsnNode.nextInsn = nextInsn;
         if (nextInsn != null) {
@@ -229,6 +275,7 @@ public class InsnList {
      * @param insnNode an instruction, <i>which must not belong to any {@link InsnList}</i>.
      */
     public void add(final AbstractInsnNode insnNode) {
+        unpack();
         ++size;
         if (lastInsn == null) {
             firstInsn = insnNode;
@@ -249,6 +296,8 @@ public class InsnList {
      *                 different from 'this'.
      */
     public void add(final InsnList insnList) {
+        unpack();
+        insnList.unpack();
         if (insnList.size == 0) {
             return;
         }
@@ -272,6 +321,7 @@ public class InsnList {
      * @param insnNode an instruction, <i>which must not belong to any {@link InsnList}</i>.
      */
     public void insert(final AbstractInsnNode insnNode) {
+        unpack();
         ++size;
         if (firstInsn == null) {
             firstInsn = insnNode;
@@ -292,6 +342,8 @@ public class InsnList {
      *                 different from 'this'.
      */
     public void insert(final InsnList insnList) {
+        unpack();
+        insnList.unpack();
         if (insnList.size == 0) {
             return;
         }
@@ -317,6 +369,7 @@ public class InsnList {
      *                     InsnList}</i>.
      */
     public void insert(final AbstractInsnNode previousInsn, final AbstractInsnNode insnNode) {
+        unpack();
         ++size;
         AbstractInsnNode nextInsn = previousInsn.nextInsn;
         if (nextInsn == null) {
@@ -340,6 +393,8 @@ public class InsnList {
      *                     list must be different from 'this'.
      */
     public void insert(final AbstractInsnNode previousInsn, final InsnList insnList) {
+        unpack();
+        insnList.unpack();
         if (insnList.size == 0) {
             return;
         }
@@ -367,6 +422,7 @@ public class InsnList {
      *                 InsnList}</i>.
      */
     public void insertBefore(final AbstractInsnNode nextInsn, final AbstractInsnNode insnNode) {
+        unpack();
         ++size;
         AbstractInsnNode previousInsn = nextInsn.previousInsn;
         if (previousInsn == null) {
@@ -390,6 +446,8 @@ public class InsnList {
      *                 list must be different from 'this'.
      */
     public void insertBefore(final AbstractInsnNode nextInsn, final InsnList insnList) {
+        unpack();
+        insnList.unpack();
         if (insnList.size == 0) {
             return;
         }
@@ -415,6 +473,7 @@ public class InsnList {
      * @param insnNode the instruction <i>of this list</i> that must be removed.
      */
     public void remove(final AbstractInsnNode insnNode) {
+        unpack();
         --size;
         AbstractInsnNode nextInsn = insnNode.nextInsn;
         AbstractInsnNode previousInsn = insnNode.previousInsn;
@@ -447,6 +506,10 @@ public class InsnList {
      * @param mark if the instructions must be marked as no longer belonging to any {@link InsnList}.
      */
     void removeAll(final boolean mark) {
+        load();
+        // The nodes stored as is in packedObjects are already marked as not belonging to any list.
+        packedInsns = null;
+        packedObjects = null;
         if (mark) {
             AbstractInsnNode currentInsn = firstInsn;
             while (currentInsn != null) {
@@ -475,6 +538,15 @@ public class InsnList {
      * instruction list between several <code>ClassWriter</code>s.
      */
     public void resetLabels() {
+        load();
+        if (packedObjects != null) {
+            for (Object packedObject : packedObjects) {
+                if (packedObject instanceof LabelNode) {
+                    ((LabelNode) packedObject).resetLabel();
+                }
+            }
+            return;
+        }
         AbstractInsnNode currentInsn = firstInsn;
         while (currentInsn != null) {
             if (currentInsn instanceof LabelNode) {
@@ -484,6 +556,299 @@ public class InsnList {
         }
     }
 
+    /**
+     * Stores the instructions of this list in a compact form, made of an int array and of an array of
+     * distinct objects (strings, constants, labels, etc), instead of a linked list of instruction
+     * objects. This form uses much less memory than the linked list, and is intended for lists which
+     * are mostly read, or not used at all, after being built. {@link #size}, {@link #accept} and
+     * {@link #resetLabels} directly use the packed form, whereas all the other methods first unpack
+     * the list, i.e. rebuild a linked list of instruction objects.
+     * <p>
+     * The {@link LabelNode} objects are stored as is in the packed form, so that the try catch
+     * blocks, local variables, frames and other instructions of the method which reference them
+     * remain valid. The {@link FrameNode}, {@link InvokeDynamicInsnNode}, {@link
+     * TableSwitchInsnNode}, {@link LookupSwitchInsnNode} and {@link MultiANewArrayInsnNode} objects,
+     * the instructions which have type annotations and the instances of sub classes of the node
+     * classes are also stored as is. <i>The other instruction objects of this list no longer belong
+     * to it after this method has been called, and are replaced with new objects when the list is
+     * unpacked</i>.
+     */
+    public void pack() {
+        if (codeLoader != null || packedInsns != null || size == 0) {
+            return;
+        }
+        // Each instruction uses at most 5 int values (header, owner, name, descriptor and isInterface
+        // for a method instruction).
+        int[] insns = new int[5 * size];
+        int insnsLength = 0;
+        ArrayList<Object> objects = new ArrayList<Object>();
+        HashMap<Object, Integer> objectIndex = new HashMap<Object, Integer>();
+        AbstractInsnNode currentInsn = firstInsn;
+        while (currentInsn != null) {
+            Class<?> insnClass = currentInsn.getClass();
+            int header = (currentInsn.opcode << 8) | currentInsn.getType();
+            if (currentInsn.visibleTypeAnnotations != null
+                    || currentInsn.invisibleTypeAnnotations != null) {
+                insns[insnsLength++] = UNPACKED_NODE;
+                insns[insnsLength++] = packObject(currentInsn, objects, objectIndex);
+            } else if (insnClass == InsnNode.class) {
+                insns[insnsLength++] = header;
+            } else if (insnClass == IntInsnNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] = ((IntInsnNode) currentInsn).operand;
+            } else if (insnClass == VarInsnNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] = ((VarInsnNode) currentInsn).var;
+            } else if (insnClass == TypeInsnNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] =
+                        packObject(((TypeInsnNode) currentInsn).desc, objects, objectIndex);
+            } else if (insnClass == FieldInsnNode.class) {
+                FieldInsnNode fieldInsn = (FieldInsnNode) currentInsn;
+                insns[insnsLength++] = header;
+                insns[insnsLength++] = packObject(fieldInsn.owner, objects, objectIndex);
+                insns[insnsLength++] = packObject(fieldInsn.name, objects, objectIndex);
+                insns[insnsLength++] = packObject(fieldInsn.desc, objects, objectIndex);
+            } else if (insnClass == MethodInsnNode.class) {
+                MethodInsnNode methodInsn = (MethodInsnNode) currentInsn;
+                insns[insnsLength++] = header;
+                insns[insnsLength++] = packObject(methodInsn.owner, objects, objectIndex);
+                insns[insnsLength++] = packObject(methodInsn.name, objects, objectIndex);
+                insns[insnsLength++] = packObject(methodInsn.desc, objects, objectIndex);
+                insns[insnsLength++] = methodInsn.itf ? 1 : 0;
+            } else if (insnClass == JumpInsnNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] =
+                        packObject(((JumpInsnNode) currentInsn).label, objects, objectIndex);
+            } else if (insnClass == LdcInsnNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] =
+                        packObject(((LdcInsnNode) currentInsn).cst, objects, objectIndex);
+            } else if (insnClass == IincInsnNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] = ((IincInsnNode) currentInsn).var;
+                insns[insnsLength++] = ((IincInsnNode) currentInsn).incr;
+            } else if (insnClass == LineNumberNode.class) {
+                insns[insnsLength++] = header;
+                insns[insnsLength++] = ((LineNumberNode) currentInsn).line;
+                insns[insnsLength++] =
+                        packObject(((LineNumberNode) currentInsn).start, objects, objectIndex);
+            } else {
+                // LabelNode objects are also stored as is, with this generic case.
+                insns[insnsLength++] = UNPACKED_NODE;
+                insns[insnsLength++] = packObject(currentInsn, objects, objectIndex);
+            }
+            currentInsn = currentInsn.nextInsn;
+        }
+        // removeAll sets size to 0, but the packed form contains the same instructions as before.
+        int packedSize = size;
+        removeAll(/* mark = */ true);
+        size = packedSize;
+        packedInsns = new int[insnsLength];
+        System.arraycopy(insns, 0, packedInsns, 0, insnsLength);
+        packedObjects = objects.toArray();
+    }
+
+    /**
+     * Returns the index of the given object in the list of objects referenced from a packed
+     * instruction list, adding it to this list if necessary.
+     *
+     * @param object      a string, constant, {@link LabelNode} or instruction node.
+     * @param objects     the objects referenced from a packed instruction list.
+     * @param objectIndex the index of each element of objects.
+     * @return the index of object in objects.
+     */
+    private static int packObject(
+            final Object object,
+            final ArrayList<Object> objects,
+            final HashMap<Object, Integer> objectIndex) {
+        Integer index = objectIndex.get(object);
+        if (index == null) {
+            index = objects.size();
+            objects.add(object);
+            objectIndex.put(object, index);
+        }
+        return index;
+    }
+
+    /**
+     * Rebuilds the linked list of instruction objects of this list from its packed form, if this
+     * list is packed. Does nothing otherwise.
+     */
+    private void unpack() {
+        load();
+        int[] insns = packedInsns;
+        if (insns == null) {
+            return;
+        }
+        Object[] objects = packedObjects;
+        packedInsns = null;
+        packedObjects = null;
+        AbstractInsnNode previousInsn = null;
+        int currentOffset = 0;
+        while (currentOffset < insns.length) {
+            int header = insns[currentOffset++];
+            int opcode = header >> 8;
+            AbstractInsnNode currentInsn;
+            switch (header & 0xFF) {
+                case AbstractInsnNode.INSN:
+                    currentInsn = new InsnNode(opcode);
+                    break;
+                case AbstractInsnNode.INT_INSN:
+                    currentInsn = new IntInsnNode(opcode, insns[currentOffset++]);
+                    break;
+                case AbstractInsnNode.VAR_INSN:
+                    currentInsn = new VarInsnNode(opcode, insns[currentOffset++]);
+                    break;
+                case AbstractInsnNode.TYPE_INSN:
+                    String descriptor = (String) objects[insns[currentOffset++]];
+                    currentInsn = new TypeInsnNode(opcode, descriptor);
+                    break;
+                case AbstractInsnNode.FIELD_INSN:
+                    currentInsn =
+                            new FieldInsnNode(
+                                    opcode,
+                                    (String) objects[insns[currentOffset]],
+                                    (String) objects[insns[currentOffset + 1]],
+                                    (String) objects[insns[currentOffset + 2]]);
+                    currentOffset += 3;
+                    break;
+                case AbstractInsnNode.METHOD_INSN:
+                    currentInsn =
+                            new MethodInsnNode(
+                                    opcode,
+                                    (String) objects[insns[currentOffset]],
+                                    (String) objects[insns[currentOffset + 1]],
+                                    (String) objects[insns[currentOffset + 2]],
+                                    insns[currentOffset + 3] != 0);
+                    currentOffset += 4;
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    LabelNode label = (LabelNode) objects[insns[currentOffset++]];
+                    currentInsn = new JumpInsnNode(opcode, label);
+                    break;
+                case AbstractInsnNode.LDC_INSN:
+                    currentInsn = new LdcInsnNode(objects[insns[currentOffset++]]);
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    currentInsn = new IincInsnNode(insns[currentOffset], insns[currentOffset + 1]);
+                    currentOffset += 2;
+                    break;
+                case AbstractInsnNode.LINE:
+                    LabelNode start = (LabelNode) objects[insns[currentOffset + 1]];
+                    currentInsn = new LineNumberNode(insns[currentOffset], start);
+                    currentOffset += 2;
+                    break;
+                case UNPACKED_NODE:
+                    currentInsn = (AbstractInsnNode) objects[insns[currentOffset++]];
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+            // Link the instructions directly, instead of using add(), which can be overridden.
+            currentInsn.index = 0; // currentInsn now belongs to an InsnList.
+            currentInsn.previousInsn = previousInsn;
+            if (previousInsn == null) {
+                firstInsn = currentInsn;
+            } else {
+                previousInsn.nextInsn = currentInsn;
+            }
+            previousInsn = currentInsn;
+        }
+        lastInsn = previousInsn;
+        cache = null;
+    }
+
+    /**
+     * Sets the loader which must be used to parse the instructions of this list, the first time they
+     * are used. This list must be empty.
+     *
+     * @param codeLoader the loader of the instructions of this list.
+     */
+    void setCodeLoader(final CodeLoader codeLoader) {
+        this.codeLoader = codeLoader;
+    }
+
+    /**
+     * Parses the instructions of this list with {@link #codeLoader}, if they have not been loaded
+     * yet. Does nothing otherwise.
+     */
+    void load() {
+        CodeLoader currentCodeLoader = codeLoader;
+        if (currentCodeLoader != null) {
+            // Clear the loader first, since loading the code adds instructions to this list.
+            codeLoader = null;
+            currentCodeLoader.load();
+        }
+    }
+
+    /**
+     * Makes the given visitor visit all the instructions of this packed list, without unpacking it.
+     *
+     * @param methodVisitor the method visitor that must visit the instructions.
+     */
+    private void acceptPacked(final MethodVisitor methodVisitor) {
+        int[] insns = packedInsns;
+        Object[] objects = packedObjects;
+        int currentOffset = 0;
+        while (currentOffset < insns.length) {
+            int header = insns[currentOffset++];
+            int opcode = header >> 8;
+            switch (header & 0xFF) {
+                case AbstractInsnNode.INSN:
+                    methodVisitor.visitInsn(opcode);
+                    break;
+                case AbstractInsnNode.INT_INSN:
+                    methodVisitor.visitIntInsn(opcode, insns[currentOffset++]);
+                    break;
+                case AbstractInsnNode.VAR_INSN:
+                    methodVisitor.visitVarInsn(opcode, insns[currentOffset++]);
+                    break;
+                case AbstractInsnNode.TYPE_INSN:
+                    methodVisitor.visitTypeInsn(opcode, (String) objects[insns[currentOffset++]]);
+                    break;
+                case AbstractInsnNode.FIELD_INSN:
+                    methodVisitor.visitFieldInsn(
+                            opcode,
+                            (String) objects[insns[currentOffset]],
+                            (String) objects[insns[currentOffset + 1]],
+                            (String) objects[insns[currentOffset + 2]]);
+                    currentOffset += 3;
+                    break;
+                case AbstractInsnNode.METHOD_INSN:
+                    methodVisitor.visitMethodInsn(
+                            opcode,
+                            (String) objects[insns[currentOffset]],
+                            (String) objects[insns[currentOffset + 1]],
+                            (String) objects[insns[currentOffset + 2]],
+                            insns[currentOffset + 3] != 0);
+                    currentOffset += 4;
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    LabelNode label = (LabelNode) objects[insns[currentOffset++]];
+                    methodVisitor.visitJumpInsn(opcode, label.getLabel());
+                    break;
+                case AbstractInsnNode.LDC_INSN:
+                    methodVisitor.visitLdcInsn(objects[insns[currentOffset++]]);
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    methodVisitor.visitIincInsn(insns[currentOffset], insns[currentOffset + 1]);
+                    currentOffset += 2;
+                    break;
+                case AbstractInsnNode.LINE:
+                    LabelNode start = (LabelNode) objects[insns[currentOffset + 1]];
+                    methodVisitor.visitLineNumber(insns[currentOffset], start.getLabel());
+                    currentOffset += 2;
+                    break;
+                case UNPACKED_NODE:
+                    ((AbstractInsnNode) objects[insns[currentOffset++]]).accept(methodVisitor);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+    }
+
     // Note: this class is not generified because it would create bridges.
     @SuppressWarnings("rawtypes")
     private final class InsnListIterator implements ListIterator {
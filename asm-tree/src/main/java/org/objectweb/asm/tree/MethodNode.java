@@ -792,10 +792,12 @@ public class MethodNode extends MethodVisitor {
                 }
             }
         }
-        // Visit the non standard attributes.
+        // Visit the non standard attributes. If the code is parsed lazily, it must be loaded first,
+        // since its non standard attributes are added to attrs.
         if (visited) {
             instructions.resetLabels();
         }
+        instructions.load();
         if (attrs != null) {
             for (int i = 0, n = attrs.size(); i < n; ++i) {
                 methodVisitor.visitAttribute(attrs.get(i));
@@ -27,6 +27,7 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.tree;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -395,6 +396,84 @@ public class ClassNodeTest extends AsmTest implements Opcodes {
         assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
     }
 
+    /**
+     * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+     * method instructions are packed, and after they have been unpacked.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadPackAndWrite(final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassNode classNode = new ClassNode(apiParameter.value());
+        classReader.accept(classNode, attributes(), 0);
+        for (MethodNode methodNode : classNode.methods) {
+            int size = methodNode.instructions.size();
+            methodNode.instructions.pack();
+            assertEquals(size, methodNode.instructions.size());
+        }
+
+        ClassWriter classWriter = new ClassWriter(0);
+        classNode.accept(classWriter);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+
+        for (MethodNode methodNode : classNode.methods) {
+            int size = methodNode.instructions.size();
+            assertEquals(size, methodNode.instructions.toArray().length);
+        }
+        classWriter = new ClassWriter(0);
+        classNode.accept(classWriter);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+    }
+
+    /**
+     * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+     * code of the methods is parsed lazily.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+    public void testReadLazilyAndWrite(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassNode classNode = new ClassNode(apiParameter.value());
+        classNode.readLazily(classReader, attributes(), 0);
+        for (MethodNode methodNode : classNode.methods) {
+            assertTrue(methodNode.tryCatchBlocks.isEmpty());
+            assertEquals(0, methodNode.maxStack);
+        }
+        // Load the code of the first method, before the others.
+        if (!classNode.methods.isEmpty()) {
+            classNode.methods.get(0).instructions.getFirst();
+        }
+
+        ClassWriter classWriter = new ClassWriter(0);
+        classNode.accept(classWriter);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+    }
+
+    /**
+     * Tests that the code of the methods is parsed lazily from the right method_info structure, when
+     * some methods are not visited.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadLazilyWithSkippedMethods(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassNode expectedClassNode = new EvenMethodsClassNode();
+        classReader.accept(expectedClassNode, attributes(), 0);
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        expectedClassNode.accept(expectedClassWriter);
+
+        ClassNode classNode = new EvenMethodsClassNode();
+        classNode.readLazily(classReader, attributes(), 0);
+        ClassWriter classWriter = new ClassWriter(0);
+        classNode.accept(classWriter);
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    }
+
     /**
      * Tests that {@link ClassNode#check} throws an exception for classes that contain elements more
      * recent than the ASM API version.
@@ -514,4 +593,29 @@ public class ClassNodeTest extends AsmTest implements Opcodes {
         public void visitAttribute(final Attribute attribute) {
         }
     }
+
+    /**
+     * A ClassNode which only keeps one method out of two.
+     */
+    private static class EvenMethodsClassNode extends ClassNode {
+
+        private int methodCount;
+
+        EvenMethodsClassNode() {
+            super(Opcodes.ASM6);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String descriptor,
+                final String signature,
+                final String[] exceptions) {
+            if (methodCount++ % 2 == 1) {
+                return null;
+            }
+            return super.visitMethod(access, name, descriptor, signature, exceptions);
+        }
+    }
 }
@@ -748,6 +748,56 @@ public class InsnListTest {
         assertNotSame(label, labelNode.getLabel());
     }
 
+    @Test
+    public void testPack() {
+        LabelNode labelNode = new LabelNode();
+        InsnNode insn = new InsnNode(Opcodes.NOP);
+        FrameNode frameNode = new FrameNode(Opcodes.F_SAME, 0, null, 0, null);
+        list1.add(labelNode);
+        list1.add(new LineNumberNode(42, labelNode));
+        list1.add(insn);
+        list1.add(new VarInsnNode(Opcodes.ILOAD, 1));
+        list1.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "C", "m", "()V", true));
+        list1.add(new JumpInsnNode(Opcodes.GOTO, labelNode));
+        list1.add(frameNode);
+        list1.pack();
+        assertEquals(7, list1.size());
+        assertEquals(-1, insn.index);
+        assertEquals(null, insn.getNext());
+        list1.pack();
+
+        MethodNode methodNode = new MethodNode();
+        list1.accept(methodNode);
+        assertEquals(7, methodNode.instructions.size());
+        LabelNode visitedLabelNode = (LabelNode) methodNode.instructions.getFirst();
+        assertEquals(42, ((LineNumberNode) methodNode.instructions.get(1)).line);
+        assertTrue(((MethodInsnNode) methodNode.instructions.get(4)).itf);
+        assertEquals(visitedLabelNode, ((JumpInsnNode) methodNode.instructions.get(5)).label);
+
+        assertEquals(labelNode, list1.getFirst());
+        assertEquals(frameNode, list1.getLast());
+        assertEquals(7, list1.toArray().length);
+        assertFalse(list1.contains(insn));
+        assertEquals(Opcodes.NOP, list1.get(2).getOpcode());
+        assertEquals(labelNode, ((LineNumberNode) list1.get(1)).start);
+        assertEquals(1, ((VarInsnNode) list1.get(3)).var);
+        assertEquals(labelNode, ((JumpInsnNode) list1.get(5)).label);
+    }
+
+    @Test
+    public void testPackAndAdd() {
+        list2.pack();
+        list1.add(new InsnNode(Opcodes.NOP));
+        list1.pack();
+        list1.add(list2);
+        assertEquals(3, list1.size());
+        assertEquals(0, list2.size());
+        list1.pack();
+        list1.clear();
+        assertEquals(0, list1.size());
+        assertEquals(null, list1.getFirst());
+    }
+
     /**
      * An InsnList which checks that its methods are properly used.
      */
@@ -71,6 +71,20 @@ public class ByteVector {
         this.length = data.length;
     }
 
+    /**
+     * Constructs a new {@link ByteVector} whose content is backed by the given array. The bytes put
+     * in this vector are written in this array, starting at the given offset, as long as it is large
+     * enough to hold them.
+     *
+     * @param data the array where the content of this vector must be written.
+     * @param offset the index in data of the first byte put in this vector. The bytes before this
+     *     index are considered part of the vector content.
+     */
+    ByteVector(final byte[] data, final int offset) {
+        this.data = data;
+        this.length = offset;
+    }
+
     /**
      * Puts a byte into this byte vector. The byte vector is automatically enlarged if necessary.
      *
@@ -346,11 +360,31 @@ public class ByteVector {
         }
         if (byteArrayValue != null) {
             System.arraycopy(byteArrayValue, byteOffset, data, length, byteLength);
+        } else {
+            // The data array is not necessarily zero filled, if it is reused (see ClassWriter).
+            for (int i = 0; i < byteLength; ++i) {
+                data[length + i] = 0;
+            }
         }
         length += byteLength;
         return this;
     }
 
+    /**
+     * Makes sure that the capacity of this byte vector is at least equal to the given value. Unlike
+     * {@link #enlarge}, this method does not double the capacity of this vector, and is thus
+     * intended to presize it, before its first use.
+     *
+     * @param capacity the minimum capacity that this byte vector should have.
+     */
+    final void ensureCapacity(final int capacity) {
+        if (capacity > data.length) {
+            byte[] newData = new byte[capacity];
+            System.arraycopy(data, 0, newData, 0, length);
+            data = newData;
+        }
+    }
+
     /**
      * Enlarges this byte vector so that it can receive 'size' more bytes.
      *
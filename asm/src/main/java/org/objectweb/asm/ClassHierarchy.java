@@ -0,0 +1,340 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.objectweb.asm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class hierarchy information needed to compute stack map frames, computed from the ClassFile
+ * structures of the classes (and thus without loading them). The ClassFile structures are found
+ * with a {@link ClassLoader} (but they are read as resources, not loaded as classes), or can be
+ * given explicitly with {@link #addClass}, e.g. for classes which are being generated or which are
+ * not in any class path. The hierarchy information is cached, and this class is thread safe, so
+ * that a single {@link ClassHierarchy} can be shared between all the {@link ClassWriter}s of an
+ * application (see {@link ClassWriter#ClassWriter(ClassReader, int, ClassHierarchy)}).
+ */
+public class ClassHierarchy {
+
+    /**
+     * The class loader used to find the ClassFile structures of the classes, or <tt>null</tt> to use
+     * the system class loader.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * The hierarchy information of each class, indexed by internal name.
+     */
+    private final ConcurrentHashMap<String, ClassInfo> classInfos;
+
+    /**
+     * The common super classes computed with {@link #getCommonSuperClass}, indexed by the two
+     * corresponding internal names, in alphabetical order and separated with a space.
+     */
+    private final ConcurrentHashMap<String, String> commonSuperClasses;
+
+    /**
+     * Constructs a new {@link ClassHierarchy} which finds the ClassFile structures of the classes
+     * with the class loader of this class.
+     */
+    public ClassHierarchy() {
+        this(ClassHierarchy.class.getClassLoader());
+    }
+
+    /**
+     * Constructs a new {@link ClassHierarchy}.
+     *
+     * @param classLoader the class loader used to find the ClassFile structures of the classes, with
+     *                    {@link ClassLoader#getResourceAsStream}, or <tt>null</tt> to use the system
+     *                    class loader.
+     */
+    public ClassHierarchy(final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        this.classInfos = new ConcurrentHashMap<String, ClassInfo>();
+        this.commonSuperClasses = new ConcurrentHashMap<String, String>();
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Methods to add classes
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the given class to this hierarchy. This class takes precedence over any class with the
+     * same name found by {@link #getClassFileAsStream}, but not over a class previously added with
+     * this method, or previously used in this hierarchy.
+     *
+     * @param classReader the reader of the class to be added.
+     */
+    public void addClass(final ClassReader classReader) {
+        addClass(
+                classReader.getClassName(),
+                classReader.getAccess(),
+                classReader.getSuperName(),
+                classReader.getInterfaces());
+    }
+
+    /**
+     * Adds the given class to this hierarchy. This class takes precedence over any class with the
+     * same name found by {@link #getClassFileAsStream}, but not over a class previously added with
+     * this method, or previously used in this hierarchy.
+     *
+     * @param name       the internal name of the class (see {@link Type#getInternalName()}).
+     * @param access     the class's access flags (see {@link Opcodes}).
+     * @param superName  the internal name of the super class, or <tt>null</tt> for {@link Object}.
+     * @param interfaces the internal names of the class's interfaces, or <tt>null</tt>.
+     */
+    public void addClass(
+            final String name, final int access, final String superName, final String[] interfaces) {
+        classInfos.putIfAbsent(
+                name,
+                new ClassInfo(access, superName, interfaces == null ? new String[0] : interfaces));
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Accessors
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the internal name of the super class of the given class.
+     *
+     * @param type the internal name of a class.
+     * @return the internal name of the super class of type, or <tt>null</tt> for {@link Object}.
+     * @throws TypeNotPresentException if the ClassFile structure of type can not be found.
+     */
+    public String getSuperClass(final String type) {
+        return getClassInfo(type).superName;
+    }
+
+    /**
+     * Returns the internal names of the interfaces directly implemented by the given class.
+     *
+     * @param type the internal name of a class.
+     * @return the internal names of the interfaces directly implemented by type. Inherited
+     * interfaces are not returned.
+     * @throws TypeNotPresentException if the ClassFile structure of type can not be found.
+     */
+    public String[] getInterfaces(final String type) {
+        return getClassInfo(type).interfaces.clone();
+    }
+
+    /**
+     * Returns whether the given class is an interface.
+     *
+     * @param type the internal name of a class.
+     * @return whether type is an interface.
+     * @throws TypeNotPresentException if the ClassFile structure of type can not be found.
+     */
+    public boolean isInterface(final String type) {
+        return (getClassInfo(type).access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * Returns whether a class is a sub type of another class, i.e. whether it is equal to this other
+     * class, or is a direct or indirect sub class of it, or implements it (if it is an interface),
+     * directly or indirectly. As in {@link Class#isAssignableFrom}, all the classes and interfaces
+     * are sub types of {@link Object}.
+     *
+     * @param type1 the internal name of a class.
+     * @param type2 the internal name of another class.
+     * @return whether type2 is a sub type of type1.
+     * @throws TypeNotPresentException if the ClassFile structure of a class can not be found.
+     */
+    public boolean isAssignableFrom(final String type1, final String type2) {
+        if (type1.equals(type2) || type1.equals("java/lang/Object")) {
+            return true;
+        }
+        if (!isInterface(type1)) {
+            // Only the super classes of type2 can be equal to type1.
+            if (isInterface(type2)) {
+                return false;
+            }
+            String superClass = getSuperClass(type2);
+            while (superClass != null) {
+                if (superClass.equals(type1)) {
+                    return true;
+                }
+                superClass = getSuperClass(superClass);
+            }
+            return false;
+        }
+        return implementsInterface(type2, type1);
+    }
+
+    /**
+     * Returns the common super class of the two given classes, with the same semantics as {@link
+     * ClassWriter#getCommonSuperClass}.
+     *
+     * @param type1 the internal name of a class.
+     * @param type2 the internal name of another class.
+     * @return the internal name of the common super class of the two given classes.
+     * @throws TypeNotPresentException if the ClassFile structure of a class can not be found.
+     */
+    public String getCommonSuperClass(final String type1, final String type2) {
+        // The result does not depend on the order of the arguments, so use a single cache entry for
+        // (type1, type2) and (type2, type1).
+        String key = type1.compareTo(type2) < 0 ? type1 + ' ' + type2 : type2 + ' ' + type1;
+        String commonSuperClass = commonSuperClasses.get(key);
+        if (commonSuperClass == null) {
+            commonSuperClass = computeCommonSuperClass(type1, type2);
+            commonSuperClasses.put(key, commonSuperClass);
+        }
+        return commonSuperClass;
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Methods to be overridden
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an input stream containing the ClassFile structure of the given class. This method is
+     * called at most once per class, for the classes which have not been added with {@link
+     * #addClass}. The default implementation returns the corresponding resource of {@link
+     * #classLoader}.
+     *
+     * @param type the internal name of a class.
+     * @return an input stream containing the ClassFile structure of type, or <tt>null</tt> if it can
+     * not be found.
+     * @throws IOException if a problem occurs while opening the input stream.
+     */
+    protected InputStream getClassFileAsStream(final String type) throws IOException {
+        String resourceName = type + ".class";
+        return classLoader == null
+                ? ClassLoader.getSystemResourceAsStream(resourceName)
+                : classLoader.getResourceAsStream(resourceName);
+    }
+
+    // -----------------------------------------------------------------------------------------------
+    // Utility methods
+    // -----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the hierarchy information of the given class, computing it if needed.
+     *
+     * @param type the internal name of a class.
+     * @return the hierarchy information of type.
+     * @throws TypeNotPresentException if the ClassFile structure of type can not be found.
+     */
+    private ClassInfo getClassInfo(final String type) {
+        ClassInfo classInfo = classInfos.get(type);
+        if (classInfo == null) {
+            ClassReader classReader;
+            try {
+                InputStream inputStream = getClassFileAsStream(type);
+                if (inputStream == null) {
+                    throw new TypeNotPresentException(type, null);
+                }
+                // Only the header of the class is needed, which does not depend on the class version.
+                classReader =
+                        new ClassReader(
+                                ClassReader.readStream(inputStream, true),
+                                0,
+                                /* checkClassVersion = */ false);
+            } catch (IOException e) {
+                throw new TypeNotPresentException(type, e);
+            }
+            addClass(classReader);
+            classInfo = classInfos.get(type);
+        }
+        return classInfo;
+    }
+
+    /**
+     * Returns whether the given class implements the given interface, directly or indirectly.
+     *
+     * @param type          the internal name of a class.
+     * @param interfaceType the internal name of an interface.
+     * @return whether type implements interfaceType.
+     */
+    private boolean implementsInterface(final String type, final String interfaceType) {
+        String currentType = type;
+        while (currentType != null) {
+            ClassInfo classInfo = getClassInfo(currentType);
+            for (String currentInterface : classInfo.interfaces) {
+                if (currentInterface.equals(interfaceType)
+                        || implementsInterface(currentInterface, interfaceType)) {
+                    return true;
+                }
+            }
+            currentType = classInfo.superName;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the common super class of the two given classes.
+     *
+     * @param type1 the internal name of a class.
+     * @param type2 the internal name of another class.
+     * @return the internal name of the common super class of the two given classes.
+     */
+    private String computeCommonSuperClass(final String type1, final String type2) {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (isInterface(type1) || isInterface(type2)) {
+            return "java/lang/Object";
+        }
+        String superClass = type1;
+        do {
+            superClass = getSuperClass(superClass);
+        } while (!isAssignableFrom(superClass, type2));
+        return superClass;
+    }
+
+    /**
+     * The hierarchy information of a class.
+     */
+    private static final class ClassInfo {
+
+        /**
+         * The class's access flags.
+         */
+        final int access;
+
+        /**
+         * The internal name of the super class, or <tt>null</tt> for {@link Object}.
+         */
+        final String superName;
+
+        /**
+         * The internal names of the interfaces directly implemented by the class.
+         */
+        final String[] interfaces;
+
+        ClassInfo(final int access, final String superName, final String[] interfaces) {
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+    }
+}
@@ -27,9 +27,10 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * A parser to make a {@link ClassVisitor} visit a ClassFile structure, as defined in the Java
@@ -87,6 +88,18 @@ public class ClassReader {
      */
     static final int EXPAND_ASM_INSNS = 256;
 
+    /**
+     * The minimum size of the arrays allocated to read a ClassFile structure from an input stream,
+     * when its size is not known in advance.
+     */
+    private static final int INPUT_STREAM_DATA_CHUNK_SIZE = 4096;
+
+    /**
+     * The attribute prototypes used by {@link #accept(ClassVisitor, int)}. This empty array is never
+     * modified, and can therefore be shared by all the calls to this method.
+     */
+    private static final Attribute[] NO_ATTRIBUTE_PROTOTYPES = new Attribute[0];
+
     /**
      * A byte array containing the JVMS ClassFile structure to be parsed. <i>The content of this array
      * must not be modified. This field is intended for {@link Attribute} sub classes, and is normally
@@ -105,11 +118,20 @@ public class ClassReader {
      */
     private final int[] cpInfoOffsets;
 
+    /**
+     * The number of entries in the ClassFile's constant_pool array, plus one. This can be less than
+     * the length of {@link #cpInfoOffsets} and {@link #constantUtf8Values}, when these arrays are
+     * recycled from a previous {@link ClassReader}.
+     */
+    private final int constantPoolCount;
+
     /**
      * The String objects corresponding to the CONSTANT_Utf8 items. This cache avoids multiple parsing
-     * of a given CONSTANT_Utf8 constant pool item.
+     * of a given CONSTANT_Utf8 constant pool item. It is allocated lazily, on the first read of a
+     * CONSTANT_Utf8 item, so that readers which are only used to look at a few header values (e.g.
+     * with {@link #getClassName}) or at raw constant pool entries do not pay for it.
      */
-    private final String[] constantUtf8Values;
+    private String[] constantUtf8Values;
 
     /**
      * A conservative estimate of the maximum length of the strings contained in the constant pool of
@@ -117,6 +139,27 @@ public class ClassReader {
      */
     private final int maxStringLength;
 
+    /**
+     * The buffer used to read strings in {@link #accept} and in the accessors of this class, or
+     * <tt>null</tt> to allocate a new buffer for each use. This buffer is only allocated (or recycled)
+     * for {@link ClassReader} objects constructed with {@link #ClassReader(byte[], int, int,
+     * ClassReader)}, which are not intended to be used concurrently by several threads.
+     */
+    private final char[] charBuffer;
+
+    /**
+     * The cache of CONSTANT_Utf8 strings shared with other {@link ClassReader} objects, or
+     * <tt>null</tt>.
+     */
+    private Utf8Cache utf8Cache;
+
+    /**
+     * The {@link Context} used by the latest call to {@link #accept}, which can be reused by the next
+     * call, or <tt>null</tt>. Contexts are only recycled by the {@link ClassReader} objects
+     * constructed with {@link #ClassReader(byte[], int, int, ClassReader)}.
+     */
+    private Context recycledContext;
+
     /**
      * The offset in bytes, in {@link #b}, of the ClassFile's access_flags field.
      */
@@ -147,6 +190,36 @@ public class ClassReader {
         this(classFileBuffer, classFileOffset, /* checkClassVersion = */ true);
     }
 
+    /**
+     * Constructs a new {@link ClassReader} object, reusing the internal arrays of a previous one. This
+     * constructor is intended to read many classes one after the other, with a single pool of
+     * arrays: the constant pool tables and the string buffer of the previous {@link ClassReader} are
+     * reused if they are large enough, instead of being allocated again. <i>The previous {@link
+     * ClassReader} must therefore no longer be used after this constructor has been called</i>,
+     * including by a {@link ClassWriter} constructed from it. The returned {@link ClassReader}, like
+     * the previous one, must only be used by a single thread at a time.
+     *
+     * @param classFileBuffer     a byte array containing the JVMS ClassFile structure to be read.
+     * @param classFileOffset     the offset in byteBuffer of the first byte of the ClassFile to be
+     *                            read.
+     * @param classFileLength     the length in bytes of the ClassFile to be read.
+     * @param previousClassReader the {@link ClassReader} whose internal arrays must be reused, or
+     *                            <tt>null</tt> to allocate new arrays (which can then be reused by
+     *                            the next {@link ClassReader}).
+     */
+    public ClassReader(
+            final byte[] classFileBuffer,
+            final int classFileOffset,
+            final int classFileLength,
+            final ClassReader previousClassReader) {
+        this(
+                classFileBuffer,
+                classFileOffset,
+                /* checkClassVersion = */ true,
+                /* recycle = */ true,
+                previousClassReader);
+    }
+
     /**
      * Constructs a new {@link ClassReader} object. <i>This internal constructor must not be exposed
      * as a public API</i>.
@@ -157,6 +230,28 @@ public class ClassReader {
      */
     ClassReader(
             final byte[] classFileBuffer, final int classFileOffset, final boolean checkClassVersion) {
+        this(classFileBuffer, classFileOffset, checkClassVersion, /* recycle = */ false, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object.
+     *
+     * @param classFileBuffer     a byte array containing the JVMS ClassFile structure to be read.
+     * @param classFileOffset     the offset in byteBuffer of the first byte of the ClassFile to be
+     *                            read.
+     * @param checkClassVersion   whether to check the class version or not.
+     * @param recycle             whether the internal arrays of this reader can be reused by
+     *                            another reader. If true, a string buffer is allocated once for all
+     *                            the uses of this reader.
+     * @param previousClassReader a {@link ClassReader} whose internal arrays must be reused, or
+     *                            <tt>null</tt>.
+     */
+    private ClassReader(
+            final byte[] classFileBuffer,
+            final int classFileOffset,
+            final boolean checkClassVersion,
+            final boolean recycle,
+            final ClassReader previousClassReader) {
         this.b = classFileBuffer;
         // Check the class' major_version. This field is after the magic and minor_version fields, which
         // use 4 and 2 bytes respectively.
@@ -167,8 +262,21 @@ public class ClassReader {
         // Create the constant pool arrays. The constant_pool_count field is after the magic,
         // minor_version and major_version fields, which use 4, 2 and 2 bytes respectively.
         int constantPoolCount = readUnsignedShort(classFileOffset + 8);
-        cpInfoOffsets = new int[constantPoolCount];
-        constantUtf8Values = new String[constantPoolCount];
+        this.constantPoolCount = constantPoolCount;
+        if (previousClassReader != null
+                && previousClassReader.cpInfoOffsets.length >= constantPoolCount) {
+            cpInfoOffsets = previousClassReader.cpInfoOffsets;
+        } else {
+            cpInfoOffsets = new int[constantPoolCount];
+        }
+        if (previousClassReader != null
+                && previousClassReader.constantUtf8Values != null
+                && previousClassReader.constantUtf8Values.length >= constantPoolCount) {
+            constantUtf8Values = previousClassReader.constantUtf8Values;
+            // The strings cached by the previous reader are not valid for this class. The offsets, on
+            // the other hand, are all recomputed below.
+            Arrays.fill(constantUtf8Values, 0, constantPoolCount, null);
+        }
         // Compute the offset of each constant pool entry, as well as a conservative estimate of the
         // maximum length of the constant pool strings. The first constant pool entry is after the
         // magic, minor_version, major_version and constant_pool_count fields, which use 4, 2, 2 and 2
@@ -193,7 +301,8 @@ public class ClassReader {
                 case Symbol.CONSTANT_LONG_TAG:
                 case Symbol.CONSTANT_DOUBLE_TAG:
                     cpInfoSize = 9;
-                    currentCpInfoIndex++;
+                    // The next entry is unusable, and has no offset (this matters for recycled arrays).
+                    cpInfoOffsets[currentCpInfoIndex++] = 0;
                     break;
                 case Symbol.CONSTANT_UTF8_TAG:
                     cpInfoSize = 3 + readUnsignedShort(currentCpInfoOffset + 1);
@@ -222,6 +331,65 @@ public class ClassReader {
         this.maxStringLength = currentMaxStringLength;
         // The Classfile's access_flags field is just after the last constant pool entry.
         this.header = currentCpInfoOffset;
+        if (!recycle) {
+            this.charBuffer = null;
+        } else if (previousClassReader != null
+                && previousClassReader.charBuffer != null
+                && previousClassReader.charBuffer.length >= currentMaxStringLength) {
+            this.charBuffer = previousClassReader.charBuffer;
+        } else {
+            this.charBuffer = new char[currentMaxStringLength];
+        }
+        if (recycle && previousClassReader != null) {
+            this.recycledContext = previousClassReader.recycledContext;
+        }
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object. The ClassFile structure is read from the current
+     * position of the given buffer, whose position and limit are left unchanged. If the buffer is
+     * backed by an accessible array (e.g. a heap buffer which is not read-only), this array is used
+     * directly as {@link #b}, without any copy. Otherwise (e.g. for a direct or a memory mapped
+     * buffer), the remaining bytes of the buffer are copied once into an array of the exact size.
+     *
+     * @param classFileBuffer a buffer whose remaining bytes contain the JVMS ClassFile structure to
+     *                        be read. The content of this buffer must not be modified while the
+     *                        {@link ClassReader} is in use.
+     */
+    public ClassReader(final ByteBuffer classFileBuffer) {
+        this(
+                getByteArray(classFileBuffer),
+                getByteArrayOffset(classFileBuffer),
+                /* checkClassVersion = */ true);
+    }
+
+    /**
+     * Returns a byte array containing the remaining bytes of the given buffer.
+     *
+     * @param byteBuffer a byte buffer.
+     * @return the array backing the given buffer if it is accessible, or otherwise a new array
+     * containing a copy of the remaining bytes of this buffer.
+     */
+    private static byte[] getByteArray(final ByteBuffer byteBuffer) {
+        if (byteBuffer.hasArray()) {
+            return byteBuffer.array();
+        }
+        // Use a duplicate to leave the position of the given buffer unchanged.
+        byte[] data = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(data);
+        return data;
+    }
+
+    /**
+     * Returns the offset, in the array returned by {@link #getByteArray}, of the first remaining byte
+     * of the given buffer.
+     *
+     * @param byteBuffer a byte buffer.
+     * @return the offset of the first remaining byte of the given buffer in its backing array if it
+     * is accessible, or 0 otherwise.
+     */
+    private static int getByteArrayOffset(final ByteBuffer byteBuffer) {
+        return byteBuffer.hasArray() ? byteBuffer.arrayOffset() + byteBuffer.position() : 0;
     }
 
     /**
@@ -236,6 +404,47 @@ public class ClassReader {
         this(readStream(inputStream, false));
     }
 
+    /**
+     * Constructs a new {@link ClassReader} object, when the size of the ClassFile structure is known
+     * in advance (e.g. from {@link java.util.zip.ZipEntry#getSize} or from a file length). In this
+     * case the ClassFile structure is read directly into an array of the exact size, without any
+     * intermediate copy.
+     *
+     * @param inputStream     an input stream of the JVMS ClassFile structure to be read. It is read
+     *                        from its current position, and exactly classFileLength bytes are read
+     *                        from it (the input stream is not closed).
+     * @param classFileLength the length in bytes of the ClassFile structure, or -1 if it is unknown
+     *                        (in which case the input stream is read until its end).
+     * @throws IOException if a problem occurs during reading, or if the input stream contains less
+     *                     than classFileLength bytes.
+     */
+    public ClassReader(final InputStream inputStream, final int classFileLength)
+            throws IOException {
+        this(
+                classFileLength < 0
+                        ? readStream(inputStream, false)
+                        : readStream(inputStream, classFileLength));
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object, using the given array as a scratch buffer to read
+     * the ClassFile structure. If the ClassFile structure fits in this array, it is read into it
+     * and this array is used as {@link #b}, without any allocation. Otherwise it is read into a new,
+     * larger array. In both cases, the ClassFile structure starts at offset 0 in {@link #b}. This
+     * constructor is intended to read many classes one after the other with the same array, which
+     * therefore must not be reused while the {@link ClassReader} (or a {@link ClassWriter}
+     * constructed from it) is in use.
+     *
+     * @param inputStream an input stream of the JVMS ClassFile structure to be read. This input
+     *                    stream must contain nothing more than the ClassFile structure itself. It is
+     *                    read from its current position to its end (but is not closed).
+     * @param buffer      a scratch array into which the ClassFile structure should be read.
+     * @throws IOException if a problem occurs during reading.
+     */
+    public ClassReader(final InputStream inputStream, final byte[] buffer) throws IOException {
+        this(readStream(inputStream, buffer, false), 0, /* checkClassVersion = */ true);
+    }
+
     /**
      * Constructs a new {@link ClassReader} object.
      *
@@ -257,20 +466,15 @@ public class ClassReader {
      * @return the content of the given input stream.
      * @throws IOException if a problem occurs during reading.
      */
-    private static byte[] readStream(final InputStream inputStream, final boolean close)
+    static byte[] readStream(final InputStream inputStream, final boolean close)
             throws IOException {
         if (inputStream == null) {
             throw new IOException("Class not found");
         }
         try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            byte[] data = new byte[inputStream.available()];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(data, 0, data.length)) != -1) {
-                outputStream.write(data, 0, bytesRead);
-            }
-            outputStream.flush();
-            return outputStream.toByteArray();
+            // In most cases 'available' is the exact size of the stream content, which is then read
+            // directly into the returned array.
+            return readStream(inputStream, new byte[inputStream.available()], true);
         } finally {
             if (close) {
                 inputStream.close();
@@ -278,6 +482,75 @@ public class ClassReader {
         }
     }
 
+    /**
+     * Reads the given input stream until its end, into the given array if possible.
+     *
+     * @param inputStream an input stream.
+     * @param buffer      the array into which the stream content should be read, if it fits in it.
+     * @param exactSize   whether the returned array must have the exact size of the stream content.
+     * @return the given array, if the stream content fits in it (and has exactly its size, if
+     * exactSize is true), or a new array containing the stream content otherwise.
+     * @throws IOException if a problem occurs during reading.
+     */
+    private static byte[] readStream(
+            final InputStream inputStream, final byte[] buffer, final boolean exactSize)
+            throws IOException {
+        if (inputStream == null) {
+            throw new IOException("Class not found");
+        }
+        byte[] data = buffer;
+        int length = 0;
+        while (true) {
+            if (length == data.length) {
+                // The array is full: check if the end of the stream is reached, before growing it.
+                int nextByte = inputStream.read();
+                if (nextByte == -1) {
+                    return data;
+                }
+                byte[] newData = new byte[Math.max(2 * data.length, INPUT_STREAM_DATA_CHUNK_SIZE)];
+                System.arraycopy(data, 0, newData, 0, length);
+                newData[length++] = (byte) nextByte;
+                data = newData;
+            }
+            int bytesRead = inputStream.read(data, length, data.length - length);
+            if (bytesRead == -1) {
+                if (exactSize) {
+                    byte[] trimmedData = new byte[length];
+                    System.arraycopy(data, 0, trimmedData, 0, length);
+                    return trimmedData;
+                }
+                return data;
+            }
+            length += bytesRead;
+        }
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the given input stream.
+     *
+     * @param inputStream an input stream.
+     * @param length      the number of bytes to read.
+     * @return an array of the given length, containing the bytes read from the input stream.
+     * @throws IOException if a problem occurs during reading, or if the end of the stream is reached
+     *                     before the given number of bytes has been read.
+     */
+    private static byte[] readStream(final InputStream inputStream, final int length)
+            throws IOException {
+        if (inputStream == null) {
+            throw new IOException("Class not found");
+        }
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int bytesRead = inputStream.read(data, offset, length - offset);
+            if (bytesRead == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            offset += bytesRead;
+        }
+        return data;
+    }
+
     // -----------------------------------------------------------------------------------------------
     // Accessors
     // -----------------------------------------------------------------------------------------------
@@ -301,7 +574,7 @@ public class ClassReader {
      */
     public String getClassName() {
         // this_class is just after the access_flags field (using 2 bytes).
-        return readClass(header + 2, new char[maxStringLength]);
+        return readHeaderClass(header + 2);
     }
 
     /**
@@ -313,7 +586,7 @@ public class ClassReader {
      */
     public String getSuperName() {
         // super_class is after the access_flags and this_class fields (2 bytes each).
-        return readClass(header + 4, new char[maxStringLength]);
+        return readHeaderClass(header + 4);
     }
 
     /**
@@ -328,16 +601,65 @@ public class ClassReader {
         int currentOffset = header + 6;
         int interfacesCount = readUnsignedShort(currentOffset);
         String[] interfaces = new String[interfacesCount];
-        if (interfacesCount > 0) {
-            char[] charBuffer = new char[maxStringLength];
-            for (int i = 0; i < interfacesCount; ++i) {
-                currentOffset += 2;
-                interfaces[i] = readClass(currentOffset, charBuffer);
-            }
+        for (int i = 0; i < interfacesCount; ++i) {
+            currentOffset += 2;
+            interfaces[i] = readHeaderClass(currentOffset);
         }
         return interfaces;
     }
 
+    /**
+     * Reads a CONSTANT_Class constant pool entry of the class header. Unlike {@link #readClass},
+     * this method does not allocate {@link #constantUtf8Values} if it is not already allocated, so
+     * that header-only scans (e.g. with {@link #getClassName} or {@link #getSuperName}) do not pay
+     * for the cache of all the CONSTANT_Utf8 entries.
+     *
+     * @param offset the start offset of an unsigned short value in {@link #b}, whose value is the
+     *               index of a CONSTANT_Class entry in the class's constant pool table, or 0.
+     * @return the String corresponding to the specified CONSTANT_Class entry, or <tt>null</tt> if
+     * the index is 0.
+     */
+    private String readHeaderClass(final int offset) {
+        int classIndex = readUnsignedShort(offset);
+        if (classIndex == 0) {
+            return null;
+        }
+        int constantPoolEntryIndex = readUnsignedShort(cpInfoOffsets[classIndex]);
+        if (constantUtf8Values != null) {
+            return readUTF(constantPoolEntryIndex, getCharBuffer());
+        }
+        int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
+        int utfLength = readUnsignedShort(cpInfoOffset);
+        char[] headerCharBuffer = charBuffer != null ? charBuffer : new char[utfLength];
+        if (utf8Cache != null) {
+            return utf8Cache.get(this, cpInfoOffset + 2, utfLength, headerCharBuffer);
+        }
+        return readUTF(cpInfoOffset + 2, utfLength, headerCharBuffer);
+    }
+
+    /**
+     * Returns a buffer large enough to read any string of the constant pool.
+     *
+     * @return {@link #charBuffer} if this reader uses a single string buffer, or a new buffer
+     * otherwise.
+     */
+    private char[] getCharBuffer() {
+        return charBuffer != null ? charBuffer : new char[maxStringLength];
+    }
+
+    /**
+     * Sets the cache of CONSTANT_Utf8 strings that this reader must use to read its strings. This
+     * method must be called before any string is read with this reader (i.e. just after its
+     * construction).
+     *
+     * @param utf8Cache a cache of CONSTANT_Utf8 strings, which can be shared with other readers and
+     *                  used concurrently by several threads, or <tt>null</tt> to decode all the
+     *                  strings of this class.
+     */
+    public void setUtf8Cache(final Utf8Cache utf8Cache) {
+        this.utf8Cache = utf8Cache;
+    }
+
     // -----------------------------------------------------------------------------------------------
     // Public methods
     // -----------------------------------------------------------------------------------------------
@@ -351,7 +673,7 @@ public class ClassReader {
      *                       #SKIP_CODE}, {@link #SKIP_DEBUG}, {@link #SKIP_FRAMES} or {@link #EXPAND_FRAMES}.
      */
     public void accept(final ClassVisitor classVisitor, final int parsingOptions) {
-        accept(classVisitor, new Attribute[0], parsingOptions);
+        accept(classVisitor, NO_ATTRIBUTE_PROTOTYPES, parsingOptions);
     }
 
     /**
@@ -372,10 +694,39 @@ public class ClassReader {
             final ClassVisitor classVisitor,
             final Attribute[] attributePrototypes,
             final int parsingOptions) {
-        Context context = new Context();
+        accept(classVisitor, attributePrototypes, null, parsingOptions);
+    }
+
+    /**
+     * Makes the given visitor visit the fields and methods of the JVMS ClassFile structure passed to
+     * the constructor of this {@link ClassReader} which are accepted by the given filter. The other
+     * fields and methods are skipped without being parsed.
+     *
+     * @param classVisitor        the visitor that must visit this class.
+     * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+     *                            the class (see {@link #accept(ClassVisitor, Attribute[], int)}).
+     * @param memberFilter        the filter selecting the fields and methods to be visited, or
+     *                            <tt>null</tt> to visit all of them.
+     * @param parsingOptions      the options to use to parse this class. One or more of {@link
+     *                            #SKIP_CODE}, {@link #SKIP_DEBUG}, {@link #SKIP_FRAMES} or {@link #EXPAND_FRAMES}.
+     */
+    public void accept(
+            final ClassVisitor classVisitor,
+            final Attribute[] attributePrototypes,
+            final MemberFilter memberFilter,
+            final int parsingOptions) {
+        // Reuse the context of the previous call, if any. It is cleared from recycledContext while it
+        // is in use, so that nested calls (from the visitor) do not share it.
+        Context context = recycledContext;
+        if (context == null) {
+            context = new Context();
+        } else {
+            recycledContext = null;
+            context.bootstrapMethodOffsets = null;
+        }
         context.attributePrototypes = attributePrototypes;
         context.parsingOptions = parsingOptions;
-        context.charBuffer = new char[maxStringLength];
+        context.charBuffer = getCharBuffer();
 
         // Read the access_flags, this_class, super_class, interface_count and interfaces fields.
         char[] charBuffer = context.charBuffer;
@@ -458,18 +809,7 @@ public class ClassReader {
             } else if (Constants.MODULE_PACKAGES.equals(attributeName)) {
                 modulePackagesOffset = currentAttributeOffset;
             } else if (Constants.BOOTSTRAP_METHODS.equals(attributeName)) {
-                // Read the num_bootstrap_methods field and create an array of this size.
-                int[] bootstrapMethodOffsets = new int[readUnsignedShort(currentAttributeOffset)];
-                // Compute and store the offset of each 'bootstrap_methods' array field entry.
-                int currentBootstrapMethodOffset = currentAttributeOffset + 2;
-                for (int j = 0; j < bootstrapMethodOffsets.length; ++j) {
-                    bootstrapMethodOffsets[j] = currentBootstrapMethodOffset;
-                    // Skip the bootstrap_method_ref and num_bootstrap_arguments fields (2 bytes each),
-                    // as well as the bootstrap_arguments array field (of size num_bootstrap_arguments * 2).
-                    currentBootstrapMethodOffset +=
-                            4 + readUnsignedShort(currentBootstrapMethodOffset + 2) * 2;
-                }
-                context.bootstrapMethodOffsets = bootstrapMethodOffsets;
+                context.bootstrapMethodOffsets = readBootstrapMethodOffsets(currentAttributeOffset);
             } else {
                 Attribute attribute =
                         readAttribute(
@@ -622,16 +962,98 @@ public class ClassReader {
         int fieldsCount = readUnsignedShort(currentOffset);
         currentOffset += 2;
         while (fieldsCount-- > 0) {
-            currentOffset = readField(classVisitor, context, currentOffset);
+            // The access_flags, name_index and descriptor_index fields use 2 bytes each.
+            if (memberFilter == null
+                    || memberFilter.acceptField(
+                            readUnsignedShort(currentOffset),
+                            readUTF8(currentOffset + 2, charBuffer),
+                            readUTF8(currentOffset + 4, charBuffer))) {
+                currentOffset = readField(classVisitor, context, currentOffset);
+            } else {
+                currentOffset = skipMember(currentOffset);
+            }
         }
         int methodsCount = readUnsignedShort(currentOffset);
         currentOffset += 2;
         while (methodsCount-- > 0) {
-            currentOffset = readMethod(classVisitor, context, currentOffset);
+            if (memberFilter == null
+                    || memberFilter.acceptMethod(
+                            readUnsignedShort(currentOffset),
+                            readUTF8(currentOffset + 2, charBuffer),
+                            readUTF8(currentOffset + 4, charBuffer))) {
+                currentOffset = readMethod(classVisitor, context, currentOffset);
+            } else {
+                currentOffset = skipMember(currentOffset);
+            }
         }
 
         // Visit the end of the class.
         classVisitor.visitEnd();
+        if (charBuffer != null) {
+            recycledContext = context;
+        }
+    }
+
+    /**
+     * Makes the given visitor visit a single method of the JVMS ClassFile structure passed to the
+     * constructor of this {@link ClassReader}. Only the method_info structure at the given offset
+     * is parsed, and the given visitor only receives a {@link ClassVisitor#visitMethod} call (the
+     * visit, visitEnd and other class visit methods are not called).
+     *
+     * @param classVisitor        the visitor that must visit the method.
+     * @param methodInfoOffset    the start offset of a method_info structure of this class, as
+     *                            returned by {@link #getMethodInfoOffsets}.
+     * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+     *                            the method (see {@link #accept(ClassVisitor, Attribute[], int)}).
+     * @param parsingOptions      the options to use to parse this method. One or more of {@link
+     *                            #SKIP_CODE}, {@link #SKIP_DEBUG}, {@link #SKIP_FRAMES} or {@link #EXPAND_FRAMES}.
+     */
+    public void acceptMethod(
+            final ClassVisitor classVisitor,
+            final int methodInfoOffset,
+            final Attribute[] attributePrototypes,
+            final int parsingOptions) {
+        Context context = recycledContext;
+        if (context == null) {
+            context = new Context();
+        } else {
+            recycledContext = null;
+        }
+        // The BootstrapMethods attribute is only read if the method contains invokedynamic
+        // instructions (see readCode).
+        context.bootstrapMethodOffsets = null;
+        context.attributePrototypes = attributePrototypes;
+        context.parsingOptions = parsingOptions;
+        context.charBuffer = getCharBuffer();
+        readMethod(classVisitor, context, methodInfoOffset);
+        if (context.charBuffer != null) {
+            recycledContext = context;
+        }
+    }
+
+    /**
+     * Returns the start offsets of the method_info structures of this class. These structures are
+     * skipped without being parsed.
+     *
+     * @return the start offsets of the method_info structures of this class, in the order in which
+     * they appear in the ClassFile structure. These offsets can be used with {@link #acceptMethod}.
+     */
+    public int[] getMethodInfoOffsets() {
+        // Skip the access_flags, this_class, super_class, and interfaces_count fields (using 2 bytes
+        // each), as well as the interfaces array field (2 bytes per interface).
+        int currentOffset = header + 8 + readUnsignedShort(header + 6) * 2;
+        int fieldsCount = readUnsignedShort(currentOffset);
+        currentOffset += 2;
+        while (fieldsCount-- > 0) {
+            currentOffset = skipMember(currentOffset);
+        }
+        int[] methodInfoOffsets = new int[readUnsignedShort(currentOffset)];
+        currentOffset += 2;
+        for (int i = 0; i < methodInfoOffsets.length; ++i) {
+            methodInfoOffsets[i] = currentOffset;
+            currentOffset = skipMember(currentOffset);
+        }
+        return methodInfoOffsets;
     }
 
     // ----------------------------------------------------------------------------------------------
@@ -764,6 +1186,69 @@ public class ClassReader {
         moduleVisitor.visitEnd();
     }
 
+    /**
+     * Skips a JVMS field_info or method_info structure, without parsing its attributes.
+     *
+     * @param memberInfoOffset the start offset of the field_info or method_info structure.
+     * @return the offset of the first byte following the field_info or method_info structure.
+     */
+    private int skipMember(final int memberInfoOffset) {
+        // Skip the access_flags, name_index and descriptor_index fields (2 bytes each).
+        int currentOffset = memberInfoOffset + 6;
+        int attributesCount = readUnsignedShort(currentOffset);
+        currentOffset += 2;
+        while (attributesCount-- > 0) {
+            // Skip the attribute_name_index and attribute_length fields (2 and 4 bytes), and the
+            // attribute content.
+            currentOffset += 6 + readInt(currentOffset + 2);
+        }
+        return currentOffset;
+    }
+
+    /**
+     * Finds the BootstrapMethods attribute of the class, and computes the offsets of its entries.
+     *
+     * @param charBuffer the buffer used to read strings in the constant pool.
+     * @return the offsets of the 'bootstrap_methods' array field entries of the BootstrapMethods
+     * attribute, or <tt>null</tt> if there is no such attribute.
+     */
+    private int[] readBootstrapMethodOffsets(final char[] charBuffer) {
+        int currentAttributeOffset = getFirstAttributeOffset();
+        for (int i = readUnsignedShort(currentAttributeOffset - 2); i > 0; --i) {
+            String attributeName = readUTF8(currentAttributeOffset, charBuffer);
+            int attributeLength = readInt(currentAttributeOffset + 2);
+            currentAttributeOffset += 6;
+            if (Constants.BOOTSTRAP_METHODS.equals(attributeName)) {
+                return readBootstrapMethodOffsets(currentAttributeOffset);
+            }
+            currentAttributeOffset += attributeLength;
+        }
+        return null;
+    }
+
+    /**
+     * Computes the offsets of the entries of a BootstrapMethods attribute.
+     *
+     * @param bootstrapMethodsOffset the offset of the BootstrapMethods attribute (excluding the
+     *                               attribute_info's attribute_name_index and attribute_length
+     *                               fields).
+     * @return the offsets of the 'bootstrap_methods' array field entries of this attribute.
+     */
+    private int[] readBootstrapMethodOffsets(final int bootstrapMethodsOffset) {
+        // Read the num_bootstrap_methods field and create an array of this size.
+        int[] bootstrapMethodOffsets = new int[readUnsignedShort(bootstrapMethodsOffset)];
+        // Compute and store the offset of each 'bootstrap_methods' array field entry.
+        int currentBootstrapMethodOffset = bootstrapMethodsOffset + 2;
+        for (int j = 0; j < bootstrapMethodOffsets.length; ++j) {
+            bootstrapMethodOffsets[j] = currentBootstrapMethodOffset;
+            // Skip the bootstrap_method_ref and num_bootstrap_arguments fields (2 bytes each), as
+            // well as the bootstrap_arguments array field (of size num_bootstrap_arguments * 2).
+            currentBootstrapMethodOffset +=
+                    4 + readUnsignedShort(currentBootstrapMethodOffset + 2) * 2;
+        }
+        return bootstrapMethodOffsets;
+    }
+
     /**
      * Reads a JVMS field_info structure and makes the given visitor visit it.
      *
@@ -1067,6 +1552,12 @@ public class ClassReader {
         if (methodVisitor == null) {
             return currentOffset;
         }
+        // Skip the method adapters which do not need to see the method content.
+        MethodVisitor passThroughVisitor = methodVisitor.getPassThroughVisitor();
+        while (passThroughVisitor != null) {
+            methodVisitor = passThroughVisitor;
+            passThroughVisitor = methodVisitor.getPassThroughVisitor();
+        }
 
         // If the returned MethodVisitor is in fact a MethodWriter, it means there is no method
         // adapter between the reader and the writer. If, in addition, the writer's constant pool was
@@ -1269,7 +1760,22 @@ public class ClassReader {
         // Read the bytecode 'code' array to create a label for each referenced instruction.
         final int bytecodeStartOffset = currentOffset;
         final int bytecodeEndOffset = currentOffset + codeLength;
-        final Label[] labels = context.currentMethodLabels = new Label[codeLength + 1];
+        // The labels array of the previous method is reused if it is large enough, so that reading
+        // the code of a class allocates one such array of the maximum code length, instead of one per
+        // method (the labels of the previous method are still referenced by its visitors, not by this
+        // array, which can therefore be cleared). This array is passed to user code in Attribute.read
+        // and readLabel, which could keep a reference to it. It is therefore only reused when there is
+        // no attribute prototype, and when this reader is not a subclass (which could override
+        // readLabel).
+        Label[] labels = context.currentMethodLabels;
+        if (labels == null
+                || labels.length < codeLength + 1
+                || (context.attributePrototypes != null && context.attributePrototypes.length > 0)
+                || getClass() != ClassReader.class) {
+            labels = context.currentMethodLabels = new Label[codeLength + 1];
+        } else {
+            Arrays.fill(labels, 0, codeLength + 1, null);
+        }
         while (currentOffset < bytecodeEndOffset) {
             final int bytecodeOffset = currentOffset - bytecodeStartOffset;
             final int opcode = classFileBuffer[currentOffset] & 0xFF;
@@ -1710,9 +2216,18 @@ public class ClassReader {
             context.currentFrameType = 0;
             context.currentFrameLocalCount = 0;
             context.currentFrameLocalCountDelta = 0;
-            context.currentFrameLocalTypes = new Object[maxLocals];
+            // Like the labels array, the frame arrays of the previous method are reused if possible.
+            // Their content is passed to the visitors by copy, since they already change from one
+            // frame to the next.
+            if (context.currentFrameLocalTypes == null
+                    || context.currentFrameLocalTypes.length < maxLocals) {
+                context.currentFrameLocalTypes = new Object[maxLocals];
+            }
             context.currentFrameStackCount = 0;
-            context.currentFrameStackTypes = new Object[maxStack];
+            if (context.currentFrameStackTypes == null
+                    || context.currentFrameStackTypes.length < maxStack) {
+                context.currentFrameStackTypes = new Object[maxStack];
+            }
             if (expandFrames) {
                 computeImplicitFrame(context);
             }
@@ -2180,6 +2695,10 @@ public class ClassReader {
                     int nameAndTypeCpInfoOffset = cpInfoOffsets[readUnsignedShort(cpInfoOffset + 2)];
                     String name = readUTF8(nameAndTypeCpInfoOffset, charBuffer);
                     String descriptor = readUTF8(nameAndTypeCpInfoOffset + 2, charBuffer);
+                    if (context.bootstrapMethodOffsets == null) {
+                        // This is the case when a single method is parsed with acceptMethod.
+                        context.bootstrapMethodOffsets = readBootstrapMethodOffsets(charBuffer);
+                    }
                     int bootstrapMethodOffset =
                             context.bootstrapMethodOffsets[readUnsignedShort(cpInfoOffset)];
                     Handle handle =
@@ -3137,6 +3656,31 @@ public class ClassReader {
     // Methods to parse attributes
     // ----------------------------------------------------------------------------------------------
 
+    /**
+     * @return the average size in bytes of the ClassFile's method_info structures, or 0 if there are
+     * no methods.
+     */
+    final int getAverageMethodInfoSize() {
+        // Skip the access_flags, this_class, super_class, and interfaces_count fields (using 2 bytes
+        // each), as well as the interfaces array field (2 bytes per interface).
+        int currentOffset = header + 8 + readUnsignedShort(header + 6) * 2;
+        int fieldsCount = readUnsignedShort(currentOffset);
+        currentOffset += 2;
+        while (fieldsCount-- > 0) {
+            currentOffset = skipMember(currentOffset);
+        }
+        int methodsCount = readUnsignedShort(currentOffset);
+        if (methodsCount == 0) {
+            return 0;
+        }
+        int methodsOffset = currentOffset + 2;
+        currentOffset = methodsOffset;
+        for (int i = 0; i < methodsCount; ++i) {
+            currentOffset = skipMember(currentOffset);
+        }
+        return (currentOffset - methodsOffset) / methodsCount;
+    }
+
     /**
      * @return the offset in {@link #b} of the first ClassFile's 'attributes' array field entry.
      */
@@ -3225,7 +3769,7 @@ public class ClassReader {
      * @return the number of entries in the class's constant pool table.
      */
     public int getItemCount() {
-        return cpInfoOffsets.length;
+        return constantPoolCount;
     }
 
     /**
@@ -3343,13 +3887,25 @@ public class ClassReader {
      * @return the String corresponding to the specified CONSTANT_Utf8 entry.
      */
     final String readUTF(final int constantPoolEntryIndex, final char[] charBuffer) {
-        String value = constantUtf8Values[constantPoolEntryIndex];
+        String[] utf8Values = constantUtf8Values;
+        if (utf8Values == null) {
+            // If several threads get here concurrently, each one uses its own cache, and all but one
+            // of these caches are lost. This is harmless, the strings are simply parsed again.
+            utf8Values = new String[constantPoolCount];
+            constantUtf8Values = utf8Values;
+        }
+        String value = utf8Values[constantPoolEntryIndex];
         if (value != null) {
             return value;
         }
         int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
-        return constantUtf8Values[constantPoolEntryIndex] =
-                readUTF(cpInfoOffset + 2, readUnsignedShort(cpInfoOffset), charBuffer);
+        int utfLength = readUnsignedShort(cpInfoOffset);
+        if (utf8Cache != null) {
+            value = utf8Cache.get(this, cpInfoOffset + 2, utfLength, charBuffer);
+        } else {
+            value = readUTF(cpInfoOffset + 2, utfLength, charBuffer);
+        }
+        return utf8Values[constantPoolEntryIndex] = value;
     }
 
     /**
@@ -3361,7 +3917,7 @@ public class ClassReader {
      *                   large. It is not automatically resized.
      * @return the String corresponding to the specified UTF8 string.
      */
-    private String readUTF(final int utfOffset, final int utfLength, final char[] charBuffer) {
+    final String readUTF(final int utfOffset, final int utfLength, final char[] charBuffer) {
         int currentOffset = utfOffset;
         int endOffset = currentOffset + utfLength;
         int strLength = 0;
@@ -27,6 +27,11 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 /**
  * A {@link ClassVisitor} that generates a corresponding ClassFile structure, as defined in the Java
  * Virtual Machine Specification (JVMS). It can be used alone, to generate a Java class "from
@@ -54,12 +59,19 @@ public class ClassWriter extends ClassVisitor {
      * set, then the calls to the {@link MethodVisitor#visitFrame} method are ignored, and the stack
      * map frames are recomputed from the methods bytecode. The arguments of the {@link
      * MethodVisitor#visitMaxs} method are also ignored and recomputed from the bytecode. In other
-     * words, {@link #COMPUTE_FRAMES} implies {@link #COMPUTE_MAXS}.
+     * words, {@link #COMPUTE_FRAMES} implies {@link #COMPUTE_MAXS}. The frames of some methods can
+     * be kept instead of being recomputed, see {@link #isFrameComputationNeeded}.
      *
      * @see #ClassWriter(int)
      */
     public static final int COMPUTE_FRAMES = 2;
 
+    /**
+     * The minimum number of bytes written at once to the stream by {@link #writeTo(OutputStream)},
+     * when writing the fields and methods.
+     */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
     // Note: fields are ordered as in the ClassFile structure, and those related to attributes are
     // ordered as in Section 4.7 of the JVMS.
 
@@ -125,6 +137,13 @@ public class ClassWriter extends ClassVisitor {
      */
     private MethodWriter lastMethod;
 
+    /**
+     * The methods of a previous {@link ClassWriter} whose code buffers can be reused by the next
+     * methods of this class, stored in a linked list of {@link MethodWriter} linked via their {@link
+     * MethodWriter#mv} field, or <tt>null</tt>.
+     */
+    private MethodWriter recycledMethod;
+
     /**
      * The number_of_classes field of the InnerClasses attribute, or 0.
      */
@@ -207,6 +226,18 @@ public class ClassWriter extends ClassVisitor {
      */
     private int compute;
 
+    /**
+     * The class hierarchy used by {@link #getCommonSuperClass}, or <tt>null</tt> to load the classes
+     * with the class loader of this class.
+     */
+    private final ClassHierarchy classHierarchy;
+
+    /**
+     * The expected size in bytes of the bytecode of each method, or 0 if unknown. Used to presize
+     * the {@link MethodWriter} code buffers.
+     */
+    private final int codeSizeHint;
+
     // -----------------------------------------------------------------------------------------------
     // Constructor
     // -----------------------------------------------------------------------------------------------
@@ -229,13 +260,20 @@ public class ClassWriter extends ClassVisitor {
      * <li>The constant pool and bootstrap methods from the original class are copied as is in the
      * new class, which saves time. New constant pool entries and new bootstrap methods will be
      * added at the end if necessary, but unused constant pool entries or bootstrap methods
-     * <i>won't be removed</i>.
+     * <i>won't be removed</i>. The constant pool entries of the original class are only decoded
+     * and indexed when constants of the same kind are added to the new class.
      * <li>Methods that are not transformed are copied as is in the new class, directly from the
      * original class bytecode (i.e. without emitting visit events for all the method
      * instructions), which saves a <i>lot</i> of time. Untransformed methods are detected by
      * the fact that the {@link ClassReader} receives {@link MethodVisitor} objects that come
-     * from a {@link ClassWriter} (and not from any other {@link ClassVisitor} instance).
+     * from a {@link ClassWriter} (and not from any other {@link ClassVisitor} instance), either
+     * directly or via method adapters whose {@link MethodVisitor#getPassThroughVisitor} method
+     * returns their delegate.
      * </ul>
+     * <p>
+     * Transformations which remove most of the original class content (such as shrinkers or API stub
+     * generators) should use {@link #ClassWriter(int)} instead, in order to get a constant pool which
+     * only contains the entries that are actually used.
      *
      * @param classReader the {@link ClassReader} used to read the original class. It will be used to
      *                    copy the entire constant pool and bootstrap methods from the original class and also to
@@ -246,8 +284,128 @@ public class ClassWriter extends ClassVisitor {
      *                    maximum stack size nor the stack frames will be computed for these methods</i>.
      */
     public ClassWriter(final ClassReader classReader, final int flags) {
+        this(classReader, flags, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object, using the given class hierarchy to compute the
+     * stack map frames (see {@link #getCommonSuperClass}). This avoids loading classes in order to
+     * compute the frames, and makes it possible to share the hierarchy information between several
+     * class writers.
+     *
+     * @param classReader    the {@link ClassReader} used to read the original class (see {@link
+     *                       #ClassWriter(ClassReader, int)}), or <tt>null</tt>.
+     * @param flags          option flags that can be used to modify the default behavior of this
+     *                       class. Must be zero or more of {@link #COMPUTE_MAXS} and {@link
+     *                       #COMPUTE_FRAMES}.
+     * @param classHierarchy the class hierarchy used to compute the common super class of two
+     *                       classes, or <tt>null</tt> to load these classes.
+     */
+    public ClassWriter(
+            final ClassReader classReader, final int flags, final ClassHierarchy classHierarchy) {
+        this(classReader, flags, classHierarchy, 0, 0);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object, with size hints for its internal buffers. These
+     * hints avoid enlarging these buffers (and thus copying their content) many times, when large
+     * classes are generated.
+     *
+     * @param classReader          the {@link ClassReader} used to read the original class (see
+     *                             {@link #ClassWriter(ClassReader, int)}), or <tt>null</tt>.
+     * @param flags                option flags that can be used to modify the default behavior of
+     *                             this class. Must be zero or more of {@link #COMPUTE_MAXS} and
+     *                             {@link #COMPUTE_FRAMES}.
+     * @param classHierarchy       the class hierarchy used to compute the common super class of two
+     *                             classes (see {@link #getCommonSuperClass}), or <tt>null</tt>.
+     * @param constantPoolSizeHint the expected size in bytes of the constant pool of the generated
+     *                             class, or 0 to infer it from classReader (or to use a default value
+     *                             if classReader is <tt>null</tt>).
+     * @param codeSizeHint         the expected size in bytes of the bytecode of each generated
+     *                             method, or 0 to infer it from classReader (or to use a default
+     *                             value if classReader is <tt>null</tt>).
+     */
+    public ClassWriter(
+            final ClassReader classReader,
+            final int flags,
+            final ClassHierarchy classHierarchy,
+            final int constantPoolSizeHint,
+            final int codeSizeHint) {
+        this(classReader, flags, classHierarchy, constantPoolSizeHint, codeSizeHint, null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object, reusing the internal buffers of a previous one.
+     * This constructor is intended to write many classes one after the other, with a single pool of
+     * buffers: the constant pool, symbol table and bytecode buffers of the previous {@link
+     * ClassWriter} are reused if they are large enough, instead of being allocated again. <i>The
+     * previous {@link ClassWriter} must therefore no longer be used after this constructor has been
+     * called</i> (in particular, its {@link #toByteArray} method must be called before). The
+     * returned {@link ClassWriter}, like the previous one, must only be used by a single thread at a
+     * time.
+     *
+     * @param classReader         the {@link ClassReader} used to read the original class (see
+     *                            {@link #ClassWriter(ClassReader, int)}), or <tt>null</tt>.
+     * @param flags               option flags that can be used to modify the default behavior of
+     *                            this class. Must be zero or more of {@link #COMPUTE_MAXS} and
+     *                            {@link #COMPUTE_FRAMES}.
+     * @param classHierarchy      the class hierarchy used to compute the common super class of two
+     *                            classes (see {@link #getCommonSuperClass}), or <tt>null</tt>.
+     * @param previousClassWriter the {@link ClassWriter} whose internal buffers must be reused, or
+     *                            <tt>null</tt> to allocate new buffers (which can then be reused by
+     *                            the next {@link ClassWriter}).
+     */
+    public ClassWriter(
+            final ClassReader classReader,
+            final int flags,
+            final ClassHierarchy classHierarchy,
+            final ClassWriter previousClassWriter) {
+        this(classReader, flags, classHierarchy, 0, 0, previousClassWriter);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object.
+     *
+     * @param classReader          the {@link ClassReader} used to read the original class, or
+     *                             <tt>null</tt>.
+     * @param flags                option flags that can be used to modify the default behavior of
+     *                             this class.
+     * @param classHierarchy       the class hierarchy used to compute the common super class of two
+     *                             classes, or <tt>null</tt>.
+     * @param constantPoolSizeHint the expected size in bytes of the constant pool of the generated
+     *                             class, or 0.
+     * @param codeSizeHint         the expected size in bytes of the bytecode of each generated
+     *                             method, or 0.
+     * @param previousClassWriter  a {@link ClassWriter} whose internal buffers must be reused, or
+     *                             <tt>null</tt>.
+     */
+    private ClassWriter(
+            final ClassReader classReader,
+            final int flags,
+            final ClassHierarchy classHierarchy,
+            final int constantPoolSizeHint,
+            final int codeSizeHint,
+            final ClassWriter previousClassWriter) {
         super(Opcodes.ASM6);
-        symbolTable = classReader == null ? new SymbolTable(this) : new SymbolTable(this, classReader);
+        this.classHierarchy = classHierarchy;
+        SymbolTable previousSymbolTable = null;
+        if (previousClassWriter != null) {
+            previousSymbolTable = previousClassWriter.symbolTable;
+            recycledMethod = previousClassWriter.firstMethod;
+            // Avoids retaining all the previous class writers in memory, via a chain of references.
+            previousClassWriter.recycledMethod = null;
+        }
+        if (classReader == null) {
+            symbolTable = new SymbolTable(this, constantPoolSizeHint, previousSymbolTable);
+            this.codeSizeHint = codeSizeHint;
+        } else {
+            symbolTable =
+                    new SymbolTable(this, classReader, constantPoolSizeHint, previousSymbolTable);
+            // The size of a method_info structure is usually a good approximation of the size of its
+            // bytecode, which is generally the biggest part of it.
+            this.codeSizeHint =
+                    codeSizeHint > 0 ? codeSizeHint : classReader.getAverageMethodInfoSize();
+        }
         if ((flags & COMPUTE_FRAMES) != 0) {
             this.compute = MethodWriter.COMPUTE_ALL_FRAMES;
         } else if ((flags & COMPUTE_MAXS) != 0) {
@@ -409,7 +567,22 @@ public class ClassWriter extends ClassVisitor {
             final String signature,
             final String[] exceptions) {
         MethodWriter methodWriter =
-                new MethodWriter(symbolTable, access, name, descriptor, signature, exceptions, compute);
+                new MethodWriter(
+                        symbolTable,
+                        access,
+                        name,
+                        descriptor,
+                        signature,
+                        exceptions,
+                        compute == MethodWriter.COMPUTE_ALL_FRAMES
+                                        && !isFrameComputationNeeded(access, name, descriptor)
+                                ? MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL
+                                : compute,
+                        codeSizeHint,
+                        recycledMethod);
+        if (recycledMethod != null) {
+            recycledMethod = (MethodWriter) recycledMethod.mv;
+        }
         if (firstMethod == null) {
             firstMethod = methodWriter;
         } else {
@@ -433,96 +606,181 @@ public class ClassWriter extends ClassVisitor {
      * @return the binary content of the JVMS ClassFile structure that was built by this ClassWriter.
      */
     public byte[] toByteArray() {
-        // First step: compute the size in bytes of the ClassFile structure.
+        // Allocate a ByteVector of the correct size (in order to avoid any array copy in dynamic
+        // resizes) and fill it with the ClassFile content.
+        ByteVector result = new ByteVector(computeSize());
+        putClassFile(result);
+        return result.data;
+    }
+
+    /**
+     * Returns the size of the class file that was built by this ClassWriter. This is the number of
+     * bytes returned by {@link #toByteArray} or written by the writeTo methods, provided no other
+     * visit method is called on this ClassWriter in between.
+     *
+     * @return the size in bytes of the JVMS ClassFile structure that was built by this ClassWriter.
+     */
+    public int computeSize() {
+        removeAsmInstructions();
+        return computeClassFileSize();
+    }
+
+    /**
+     * Writes the content of the class file that was built by this ClassWriter into the given buffer,
+     * starting at its current position. If the buffer is backed by an accessible array, the class
+     * file is serialized directly into this array. Otherwise it is serialized in a temporary array,
+     * which is then copied into the buffer.
+     *
+     * @param byteBuffer the buffer where the binary content of the JVMS ClassFile structure must be
+     *     written. Its position is advanced by {@link #computeSize} bytes.
+     * @throws BufferOverflowException if the remaining space in the buffer is less than {@link
+     *     #computeSize} bytes. In this case the position of the buffer is not changed.
+     */
+    public void writeTo(final ByteBuffer byteBuffer) {
+        int size = computeSize();
+        if (byteBuffer.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        if (byteBuffer.hasArray()) {
+            int position = byteBuffer.position();
+            putClassFile(new ByteVector(byteBuffer.array(), byteBuffer.arrayOffset() + position));
+            byteBuffer.position(position + size);
+        } else {
+            ByteVector result = new ByteVector(size);
+            putClassFile(result);
+            byteBuffer.put(result.data, 0, size);
+        }
+    }
+
+    /**
+     * Writes the content of the class file that was built by this ClassWriter into the given output
+     * stream. The class file is serialized and written section by section (constant pool, fields,
+     * methods and attributes), through a buffer whose size is that of the largest section, instead
+     * of the whole class file. The stream is not closed by this method.
+     *
+     * @param outputStream the stream where the binary content of the JVMS ClassFile structure must be
+     *     written.
+     * @throws IOException if an I/O error occurs while writing to the stream.
+     */
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        computeSize();
+        ByteVector buffer = new ByteVector();
+        putClassFileHeader(buffer);
+        buffer.putShort(getFieldsCount());
+        FieldWriter fieldWriter = firstField;
+        while (fieldWriter != null) {
+            flush(buffer, outputStream, STREAM_BUFFER_SIZE);
+            fieldWriter.putFieldInfo(buffer);
+            fieldWriter = (FieldWriter) fieldWriter.fv;
+        }
+        buffer.putShort(getMethodsCount());
+        MethodWriter methodWriter = firstMethod;
+        while (methodWriter != null) {
+            flush(buffer, outputStream, STREAM_BUFFER_SIZE);
+            methodWriter.putMethodInfo(buffer);
+            methodWriter = (MethodWriter) methodWriter.mv;
+        }
+        flush(buffer, outputStream, 0);
+        putClassFileAttributes(buffer);
+        flush(buffer, outputStream, 0);
+    }
+
+    /**
+     * Writes the content of the given byte vector to the given stream, and clears it, if its length
+     * is at least equal to the given threshold.
+     *
+     * @param buffer       a byte vector containing a part of a ClassFile structure.
+     * @param outputStream the stream where the content of buffer must be written.
+     * @param threshold    the minimum length of buffer to write it.
+     * @throws IOException if an I/O error occurs while writing to the stream.
+     */
+    private static void flush(
+            final ByteVector buffer, final OutputStream outputStream, final int threshold)
+            throws IOException {
+        if (buffer.length > 0 && buffer.length >= threshold) {
+            outputStream.write(buffer.data, 0, buffer.length);
+            buffer.length = 0;
+        }
+    }
+
+    /**
+     * Returns the size of the JVMS ClassFile structure built so far, ASM specific instructions
+     * included. This method can add attribute names to the constant pool.
+     *
+     * @return the size in bytes of the ClassFile structure that would be written by {@link
+     *     #putClassFile}.
+     */
+    private int computeClassFileSize() {
         // The magic field uses 4 bytes, 10 mandatory fields (minor_version, major_version,
         // constant_pool_count, access_flags, this_class, super_class, interfaces_count, fields_count,
         // methods_count and attributes_count) use 2 bytes each, and each interface uses 2 bytes too.
         int size = 24 + 2 * interfaceCount;
-        int fieldsCount = 0;
         FieldWriter fieldWriter = firstField;
         while (fieldWriter != null) {
-            ++fieldsCount;
             size += fieldWriter.computeFieldInfoSize();
             fieldWriter = (FieldWriter) fieldWriter.fv;
         }
-        int methodsCount = 0;
         MethodWriter methodWriter = firstMethod;
         while (methodWriter != null) {
-            ++methodsCount;
             size += methodWriter.computeMethodInfoSize();
             methodWriter = (MethodWriter) methodWriter.mv;
         }
         // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
-        int attributesCount = 0;
         if (classes != null) {
-            ++attributesCount;
             size += 8 + classes.length;
             symbolTable.addConstantUtf8(Constants.INNER_CLASSES);
         }
         if (enclosingClassIndex != 0) {
-            ++attributesCount;
             size += 10;
             symbolTable.addConstantUtf8(Constants.ENCLOSING_METHOD);
         }
         if ((accessFlags & Opcodes.ACC_SYNTHETIC) != 0 && (version & 0xFFFF) < Opcodes.V1_5) {
-            ++attributesCount;
             size += 6;
             symbolTable.addConstantUtf8(Constants.SYNTHETIC);
         }
         if (signatureIndex != 0) {
-            ++attributesCount;
             size += 8;
             symbolTable.addConstantUtf8(Constants.SIGNATURE);
         }
         if (sourceFileIndex != 0) {
-            ++attributesCount;
             size += 8;
             symbolTable.addConstantUtf8(Constants.SOURCE_FILE);
         }
         if (debugExtension != null) {
-            ++attributesCount;
             size += 6 + debugExtension.length;
             symbolTable.addConstantUtf8(Constants.SOURCE_DEBUG_EXTENSION);
         }
         if ((accessFlags & Opcodes.ACC_DEPRECATED) != 0) {
-            ++attributesCount;
             size += 6;
             symbolTable.addConstantUtf8(Constants.DEPRECATED);
         }
         if (lastRuntimeVisibleAnnotation != null) {
-            ++attributesCount;
             size +=
                     lastRuntimeVisibleAnnotation.computeAnnotationsSize(
                             Constants.RUNTIME_VISIBLE_ANNOTATIONS);
         }
         if (lastRuntimeInvisibleAnnotation != null) {
-            ++attributesCount;
             size +=
                     lastRuntimeInvisibleAnnotation.computeAnnotationsSize(
                             Constants.RUNTIME_INVISIBLE_ANNOTATIONS);
         }
         if (lastRuntimeVisibleTypeAnnotation != null) {
-            ++attributesCount;
             size +=
                     lastRuntimeVisibleTypeAnnotation.computeAnnotationsSize(
                             Constants.RUNTIME_VISIBLE_TYPE_ANNOTATIONS);
         }
         if (lastRuntimeInvisibleTypeAnnotation != null) {
-            ++attributesCount;
             size +=
                     lastRuntimeInvisibleTypeAnnotation.computeAnnotationsSize(
                             Constants.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS);
         }
         if (symbolTable.computeBootstrapMethodsSize() > 0) {
-            ++attributesCount;
             size += symbolTable.computeBootstrapMethodsSize();
         }
         if (moduleWriter != null) {
-            attributesCount += moduleWriter.getAttributeCount();
             size += moduleWriter.computeAttributesSize();
         }
         if (firstAttribute != null) {
-            attributesCount += firstAttribute.getAttributeCount();
             size += firstAttribute.computeAttributesSize(symbolTable);
         }
         // IMPORTANT: this must be the last part of the ClassFile size computation, because the previous
@@ -531,123 +789,208 @@ public class ClassWriter extends ClassVisitor {
         if (symbolTable.getConstantPoolCount() > 0xFFFF) {
             throw new IndexOutOfBoundsException("Class file too large!");
         }
+        return size;
+    }
+
+    /**
+     * Puts the JVMS ClassFile structure built so far into the given byte vector. {@link
+     * #computeClassFileSize} must be called first, in order to add the attribute names to the constant
+     * pool.
+     *
+     * @param output where the ClassFile structure must be put.
+     */
+    private void putClassFile(final ByteVector output) {
+        putClassFileHeader(output);
+        output.putShort(getFieldsCount());
+        FieldWriter fieldWriter = firstField;
+        while (fieldWriter != null) {
+            fieldWriter.putFieldInfo(output);
+            fieldWriter = (FieldWriter) fieldWriter.fv;
+        }
+        output.putShort(getMethodsCount());
+        MethodWriter methodWriter = firstMethod;
+        while (methodWriter != null) {
+            methodWriter.putMethodInfo(output);
+            methodWriter = (MethodWriter) methodWriter.mv;
+        }
+        putClassFileAttributes(output);
+    }
 
-        // Second step: allocate a ByteVector of the correct size (in order to avoid any array copy in
-        // dynamic resizes) and fill it with the ClassFile content.
-        ByteVector result = new ByteVector(size);
-        result.putInt(0xCAFEBABE).putInt(version);
-        symbolTable.putConstantPool(result);
+    /**
+     * Puts the magic, minor_version, major_version, constant_pool_count, constant_pool,
+     * access_flags, this_class, super_class, interfaces_count and interfaces fields of the JVMS
+     * ClassFile structure built so far into the given byte vector.
+     *
+     * @param output where the ClassFile fields must be put.
+     */
+    private void putClassFileHeader(final ByteVector output) {
+        output.putInt(0xCAFEBABE).putInt(version);
+        symbolTable.putConstantPool(output);
         int mask = (version & 0xFFFF) < Opcodes.V1_5 ? Opcodes.ACC_SYNTHETIC : 0;
-        result.putShort(accessFlags & ~mask).putShort(thisClass).putShort(superClass);
-        result.putShort(interfaceCount);
+        output.putShort(accessFlags & ~mask).putShort(thisClass).putShort(superClass);
+        output.putShort(interfaceCount);
         for (int i = 0; i < interfaceCount; ++i) {
-            result.putShort(interfaces[i]);
+            output.putShort(interfaces[i]);
         }
-        result.putShort(fieldsCount);
-        fieldWriter = firstField;
+    }
+
+    /**
+     * @return the number of fields of the class built so far.
+     */
+    private int getFieldsCount() {
+        int fieldsCount = 0;
+        FieldWriter fieldWriter = firstField;
         while (fieldWriter != null) {
-            fieldWriter.putFieldInfo(result);
+            ++fieldsCount;
             fieldWriter = (FieldWriter) fieldWriter.fv;
         }
-        result.putShort(methodsCount);
-        boolean hasFrames = false;
-        boolean hasAsmInstructions = false;
-        methodWriter = firstMethod;
+        return fieldsCount;
+    }
+
+    /**
+     * @return the number of methods of the class built so far.
+     */
+    private int getMethodsCount() {
+        int methodsCount = 0;
+        MethodWriter methodWriter = firstMethod;
         while (methodWriter != null) {
-            hasFrames |= methodWriter.hasFrames();
-            hasAsmInstructions |= methodWriter.hasAsmInstructions();
-            methodWriter.putMethodInfo(result);
+            ++methodsCount;
             methodWriter = (MethodWriter) methodWriter.mv;
         }
+        return methodsCount;
+    }
+
+    /**
+     * Puts the attributes_count and attributes fields of the JVMS ClassFile structure built so far
+     * into the given byte vector.
+     *
+     * @param output where the ClassFile fields must be put.
+     */
+    private void putClassFileAttributes(final ByteVector output) {
         // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
-        result.putShort(attributesCount);
+        // The attributes_count field is written last, when the number of attributes is known.
+        int attributesCountOffset = output.length;
+        output.putShort(0);
+        int attributesCount = 0;
         if (classes != null) {
-            result
+            ++attributesCount;
+            output
                     .putShort(symbolTable.addConstantUtf8(Constants.INNER_CLASSES))
                     .putInt(classes.length + 2)
                     .putShort(numberOfClasses)
                     .putByteArray(classes.data, 0, classes.length);
         }
         if (enclosingClassIndex != 0) {
-            result
+            ++attributesCount;
+            output
                     .putShort(symbolTable.addConstantUtf8(Constants.ENCLOSING_METHOD))
                     .putInt(4)
                     .putShort(enclosingClassIndex)
                     .putShort(enclosingMethodIndex);
         }
         if ((accessFlags & Opcodes.ACC_SYNTHETIC) != 0 && (version & 0xFFFF) < Opcodes.V1_5) {
-            result.putShort(symbolTable.addConstantUtf8(Constants.SYNTHETIC)).putInt(0);
+            ++attributesCount;
+            output.putShort(symbolTable.addConstantUtf8(Constants.SYNTHETIC)).putInt(0);
         }
         if (signatureIndex != 0) {
-            result
+            ++attributesCount;
+            output
                     .putShort(symbolTable.addConstantUtf8(Constants.SIGNATURE))
                     .putInt(2)
                     .putShort(signatureIndex);
         }
         if (sourceFileIndex != 0) {
-            result
+            ++attributesCount;
+            output
                     .putShort(symbolTable.addConstantUtf8(Constants.SOURCE_FILE))
                     .putInt(2)
                     .putShort(sourceFileIndex);
         }
         if (debugExtension != null) {
+            ++attributesCount;
             int length = debugExtension.length;
-            result
+            output
                     .putShort(symbolTable.addConstantUtf8(Constants.SOURCE_DEBUG_EXTENSION))
                     .putInt(length)
                     .putByteArray(debugExtension.data, 0, length);
         }
         if ((accessFlags & Opcodes.ACC_DEPRECATED) != 0) {
-            result.putShort(symbolTable.addConstantUtf8(Constants.DEPRECATED)).putInt(0);
+            ++attributesCount;
+            output.putShort(symbolTable.addConstantUtf8(Constants.DEPRECATED)).putInt(0);
         }
         if (lastRuntimeVisibleAnnotation != null) {
+            ++attributesCount;
             lastRuntimeVisibleAnnotation.putAnnotations(
-                    symbolTable.addConstantUtf8(Constants.RUNTIME_VISIBLE_ANNOTATIONS), result);
+                    symbolTable.addConstantUtf8(Constants.RUNTIME_VISIBLE_ANNOTATIONS), output);
         }
         if (lastRuntimeInvisibleAnnotation != null) {
+            ++attributesCount;
             lastRuntimeInvisibleAnnotation.putAnnotations(
-                    symbolTable.addConstantUtf8(Constants.RUNTIME_INVISIBLE_ANNOTATIONS), result);
+                    symbolTable.addConstantUtf8(Constants.RUNTIME_INVISIBLE_ANNOTATIONS), output);
         }
         if (lastRuntimeVisibleTypeAnnotation != null) {
+            ++attributesCount;
             lastRuntimeVisibleTypeAnnotation.putAnnotations(
-                    symbolTable.addConstantUtf8(Constants.RUNTIME_VISIBLE_TYPE_ANNOTATIONS), result);
+                    symbolTable.addConstantUtf8(Constants.RUNTIME_VISIBLE_TYPE_ANNOTATIONS), output);
         }
         if (lastRuntimeInvisibleTypeAnnotation != null) {
+            ++attributesCount;
             lastRuntimeInvisibleTypeAnnotation.putAnnotations(
-                    symbolTable.addConstantUtf8(Constants.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS), result);
+                    symbolTable.addConstantUtf8(Constants.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS), output);
+        }
+        if (symbolTable.computeBootstrapMethodsSize() > 0) {
+            ++attributesCount;
+            symbolTable.putBootstrapMethods(output);
         }
-        symbolTable.putBootstrapMethods(result);
         if (moduleWriter != null) {
-            moduleWriter.putAttributes(result);
+            attributesCount += moduleWriter.getAttributeCount();
+            moduleWriter.putAttributes(output);
         }
         if (firstAttribute != null) {
-            firstAttribute.putAttributes(symbolTable, result);
-        }
-
-        // Third step: do a ClassReader->ClassWriter round trip if the generated class contains ASM
-        // specific instructions due to large forward jumps.
-        if (hasAsmInstructions) {
-            Attribute[] attributes = getAttributePrototypes();
-            firstField = null;
-            lastField = null;
-            firstMethod = null;
-            lastMethod = null;
-            lastRuntimeVisibleAnnotation = null;
-            lastRuntimeInvisibleAnnotation = null;
-            lastRuntimeVisibleTypeAnnotation = null;
-            lastRuntimeInvisibleTypeAnnotation = null;
-            moduleWriter = null;
-            firstAttribute = null;
-            compute = hasFrames ? MethodWriter.COMPUTE_INSERTED_FRAMES : MethodWriter.COMPUTE_NOTHING;
-            new ClassReader(result.data, 0, /* checkClassVersion = */ false)
-                    .accept(
-                            this,
-                            attributes,
-                            (hasFrames ? ClassReader.EXPAND_FRAMES : 0) | ClassReader.EXPAND_ASM_INSNS);
-            return toByteArray();
-        } else {
-            return result.data;
+            attributesCount += firstAttribute.getAttributeCount();
+            firstAttribute.putAttributes(symbolTable, output);
         }
+        output.data[attributesCountOffset] = (byte) (attributesCount >>> 8);
+        output.data[attributesCountOffset + 1] = (byte) attributesCount;
+    }
+
+    /**
+     * Replaces the ASM specific instructions of this class, due to large forward jumps, with standard
+     * ones. This is done with a ClassReader->ClassWriter round trip of the class built so far. Does
+     * nothing if this class does not contain ASM specific instructions.
+     */
+    private void removeAsmInstructions() {
+        boolean hasFrames = false;
+        boolean hasAsmInstructions = false;
+        MethodWriter methodWriter = firstMethod;
+        while (methodWriter != null) {
+            hasFrames |= methodWriter.hasFrames();
+            hasAsmInstructions |= methodWriter.hasAsmInstructions();
+            methodWriter = (MethodWriter) methodWriter.mv;
+        }
+        if (!hasAsmInstructions) {
+            return;
+        }
+        ByteVector classFile = new ByteVector(computeClassFileSize());
+        putClassFile(classFile);
+        Attribute[] attributes = getAttributePrototypes();
+        firstField = null;
+        lastField = null;
+        firstMethod = null;
+        lastMethod = null;
+        lastRuntimeVisibleAnnotation = null;
+        lastRuntimeInvisibleAnnotation = null;
+        lastRuntimeVisibleTypeAnnotation = null;
+        lastRuntimeInvisibleTypeAnnotation = null;
+        moduleWriter = null;
+        firstAttribute = null;
+        compute = hasFrames ? MethodWriter.COMPUTE_INSERTED_FRAMES : MethodWriter.COMPUTE_NOTHING;
+        new ClassReader(classFile.data, 0, /* checkClassVersion = */ false)
+                .accept(
+                        this,
+                        attributes,
+                        (hasFrames ? ClassReader.EXPAND_FRAMES : 0) | ClassReader.EXPAND_ASM_INSNS);
+        removeAsmInstructions();
     }
 
     /**
@@ -862,19 +1205,45 @@ public class ClassWriter extends ClassVisitor {
     // Default method to compute common super classes when computing stack map frames
     // -----------------------------------------------------------------------------------------------
 
+    /**
+     * Returns whether the stack map frames of the given method must be computed from scratch, when
+     * the {@link #COMPUTE_FRAMES} option is used. The default implementation returns <tt>true</tt>.
+     * It can be overridden to return <tt>false</tt> for the methods which are not transformed, or
+     * whose transformations do not change the stack map frames (e.g. the insertion of stack neutral
+     * instructions without new jump targets). The frames which are visited for these methods
+     * (usually the original frames sent by a {@link ClassReader}, which must therefore not use the
+     * {@link ClassReader#SKIP_FRAMES} option) are then kept as is, and only the maximum stack size
+     * and the maximum number of local variables are computed, as with {@link #COMPUTE_MAXS}. This
+     * is much faster than computing the frames from scratch.
+     *
+     * @param access     the method's access flags (see {@link Opcodes}).
+     * @param name       the method's name.
+     * @param descriptor the method's descriptor (see {@link Type}).
+     * @return <tt>true</tt> if the stack map frames of this method must be computed from scratch,
+     * or <tt>false</tt> if the visited frames must be used instead.
+     */
+    protected boolean isFrameComputationNeeded(
+            final int access, final String name, final String descriptor) {
+        return true;
+    }
+
     /**
      * Returns the common super type of the two given types. The default implementation of this method
-     * <i>loads</i> the two given classes and uses the java.lang.Class methods to find the common
-     * super class. It can be overridden to compute this common super type in other ways, in
-     * particular without actually loading any class, or to take into account the class that is
-     * currently being generated by this ClassWriter, which can of course not be loaded since it is
-     * under construction.
+     * uses the {@link ClassHierarchy} passed to the constructor, if any. Otherwise it <i>loads</i>
+     * the two given classes and uses the java.lang.Class methods to find the common super class. It
+     * can be overridden to compute this common super type in other ways, in particular without
+     * actually loading any class, or to take into account the class that is currently being
+     * generated by this ClassWriter, which can of course not be loaded since it is under
+     * construction.
      *
      * @param type1 the internal name of a class.
      * @param type2 the internal name of another class.
      * @return the internal name of the common super class of the two given classes.
      */
     protected String getCommonSuperClass(final String type1, final String type2) {
+        if (classHierarchy != null) {
+            return classHierarchy.getCommonSuperClass(type1, type2);
+        }
         ClassLoader classLoader = getClass().getClassLoader();
         Class<?> class1;
         try {
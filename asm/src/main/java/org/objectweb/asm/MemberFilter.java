@@ -0,0 +1,71 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.objectweb.asm;
+
+/**
+ * A filter to select the fields and methods that must be parsed and visited by a {@link
+ * ClassReader}. The fields and methods which are rejected by this filter are skipped without
+ * parsing their attributes (their access flags, name and descriptor are the only values which are
+ * parsed), and are not visited at all. In particular, if the class visitor is a {@link ClassWriter},
+ * they are removed from the generated class.
+ *
+ * @see ClassReader#accept(ClassVisitor, Attribute[], MemberFilter, int)
+ */
+public abstract class MemberFilter {
+
+    /**
+     * Returns whether the given field must be parsed and visited. The default implementation of this
+     * method returns <tt>true</tt>.
+     *
+     * @param access     the field's access flags (see {@link Opcodes}), as stored in its
+     *                   access_flags field (i.e. without the flags represented with attributes,
+     *                   such as {@link Opcodes#ACC_DEPRECATED}).
+     * @param name       the field's name.
+     * @param descriptor the field's descriptor (see {@link Type}).
+     * @return <tt>true</tt> if the field must be visited, or <tt>false</tt> if it must be skipped.
+     */
+    public boolean acceptField(final int access, final String name, final String descriptor) {
+        return true;
+    }
+
+    /**
+     * Returns whether the given method must be parsed and visited. The default implementation of
+     * this method returns <tt>true</tt>.
+     *
+     * @param access     the method's access flags (see {@link Opcodes}), as stored in its
+     *                   access_flags field (i.e. without the flags represented with attributes,
+     *                   such as {@link Opcodes#ACC_DEPRECATED}).
+     * @param name       the method's name.
+     * @param descriptor the method's descriptor (see {@link Type}).
+     * @return <tt>true</tt> if the method must be visited, or <tt>false</tt> if it must be skipped.
+     */
+    public boolean acceptMethod(final int access, final String name, final String descriptor) {
+        return true;
+    }
+}
@@ -87,6 +87,28 @@ public abstract class MethodVisitor {
         this.mv = methodVisitor;
     }
 
+    /**
+     * Returns the visitor to which the visited method can be sent <i>as is</i>, if this visitor does
+     * not need to see its content. When this method returns a non <tt>null</tt> value, {@link
+     * ClassReader} sends all the method events directly to the returned visitor, and none to this
+     * one (not even {@link #visitEnd}). In particular, if all the visitors between a {@link
+     * ClassReader} and a {@link ClassWriter} constructed from it return their delegate, the method
+     * is copied as is in the new class, without parsing its content (see {@link
+     * ClassWriter#ClassWriter(ClassReader, int)}). This is much faster than forwarding each
+     * instruction, and is useful for adapters which only transform a few methods.
+     *
+     * <p>
+     * The default implementation returns <tt>null</tt>, meaning that all the method events must
+     * be sent to this visitor. Method adapters that decide not to transform a method can return
+     * {@link #mv}.
+     *
+     * @return the visitor to which the method events can be sent instead of this one, or
+     * <tt>null</tt>.
+     */
+    public MethodVisitor getPassThroughVisitor() {
+        return null;
+    }
+
     // -----------------------------------------------------------------------------------------------
     // Parameters, annotations and non standard attributes
     // -----------------------------------------------------------------------------------------------
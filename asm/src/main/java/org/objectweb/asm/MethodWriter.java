@@ -324,7 +324,12 @@ final class MethodWriter extends MethodVisitor {
     /**
      * The 'code' field of the Code attribute.
      */
-    private final ByteVector code = new ByteVector();
+    private final ByteVector code;
+
+    /**
+     * The expected size in bytes of {@link #code}, used to presize it in {@link #visitCode}.
+     */
+    private final int codeSizeHint;
 
     /**
      * The first element in the exception handler list (used to generate the exception_table of the
@@ -612,13 +617,18 @@ final class MethodWriter extends MethodVisitor {
     /**
      * Constructs a new {@link MethodWriter}.
      *
-     * @param symbolTable where the constants used in this AnnotationWriter must be stored.
-     * @param access      the method's access flags (see {@link Opcodes}).
-     * @param name        the method's name.
-     * @param descriptor  the method's descriptor (see {@link Type}).
-     * @param signature   the method's signature. May be <tt>null</tt>.
-     * @param exceptions  the internal names of the method's exceptions. May be <tt>null</tt>.
-     * @param compute     indicates what must be computed (see #compute).
+     * @param symbolTable          where the constants used in this AnnotationWriter must be stored.
+     * @param access               the method's access flags (see {@link Opcodes}).
+     * @param name                 the method's name.
+     * @param descriptor           the method's descriptor (see {@link Type}).
+     * @param signature            the method's signature. May be <tt>null</tt>.
+     * @param exceptions           the internal names of the method's exceptions. May be
+     *                             <tt>null</tt>.
+     * @param compute              indicates what must be computed (see #compute).
+     * @param codeSizeHint         the expected size in bytes of the method's bytecode, or 0 if
+     *                             unknown.
+     * @param previousMethodWriter a MethodWriter which is no longer used, whose code buffer must be
+     *                             reused, or <tt>null</tt>.
      */
     MethodWriter(
             final SymbolTable symbolTable,
@@ -627,9 +637,18 @@ final class MethodWriter extends MethodVisitor {
             final String descriptor,
             final String signature,
             final String[] exceptions,
-            final int compute) {
+            final int compute,
+            final int codeSizeHint,
+            final MethodWriter previousMethodWriter) {
         super(Opcodes.ASM6);
         this.symbolTable = symbolTable;
+        this.codeSizeHint = codeSizeHint;
+        if (previousMethodWriter == null) {
+            this.code = new ByteVector();
+        } else {
+            this.code = previousMethodWriter.code;
+            this.code.length = 0;
+        }
         this.accessFlags = "<init>".equals(name) ? access | Constants.ACC_CONSTRUCTOR : access;
         this.nameIndex = symbolTable.addConstantUtf8(name);
         this.descriptorIndex = symbolTable.addConstantUtf8(descriptor);
@@ -777,7 +796,9 @@ final class MethodWriter extends MethodVisitor {
 
     @Override
     public void visitCode() {
-        // Nothing to do.
+        // Presize the code vector here, and not in the constructor, because no code is visited for the
+        // methods which are copied as is from the source ClassReader.
+        code.ensureCapacity(codeSizeHint);
     }
 
     @Override
@@ -1609,15 +1630,26 @@ final class MethodWriter extends MethodVisitor {
         // the list and update the stack map frames of its successor blocks in the control flow graph
         // (which might change them, in which case these blocks must be processed too, and are thus
         // added to the list of blocks to process). Also compute the maximum stack size of the method,
-        // as a by-product.
-        Label listOfBlocksToProcess = firstBasicBlock;
-        listOfBlocksToProcess.nextListElement = Label.EMPTY_LIST;
+        // as a by-product. The list of blocks to process is a binary heap ordered by bytecode
+        // offset, so that the block with the smallest offset is always processed first. A block is
+        // then generally processed after all its predecessors, except for loop back edges, and is
+        // therefore rarely processed more than once. A block is in this heap if and only if its
+        // nextListElement field is not null. Since a block can not be twice in the heap, its size
+        // is bounded by the number of basic blocks.
+        int numberOfBasicBlocks = 0;
+        Label basicBlock = firstBasicBlock;
+        while (basicBlock != null) {
+            ++numberOfBasicBlocks;
+            basicBlock = basicBlock.nextBasicBlock;
+        }
+        Label[] blocksToProcess = new Label[numberOfBasicBlocks];
+        int numberOfBlocksToProcess = addBlockToProcess(blocksToProcess, 0, firstBasicBlock);
         int maxStackSize = 0;
-        while (listOfBlocksToProcess != Label.EMPTY_LIST) {
-            // Remove a basic block from the list of blocks to process.
-            Label basicBlock = listOfBlocksToProcess;
-            listOfBlocksToProcess = listOfBlocksToProcess.nextListElement;
-            basicBlock.nextListElement = null;
+        while (numberOfBlocksToProcess > 0) {
+            // Remove the basic block with the smallest bytecode offset from the blocks to process.
+            basicBlock = blocksToProcess[0];
+            numberOfBlocksToProcess =
+                    removeFirstBlockToProcess(blocksToProcess, numberOfBlocksToProcess);
             // By definition, basicBlock is reachable.
             basicBlock.flags |= Label.FLAG_REACHABLE;
             // Update the (absolute) maximum stack size.
@@ -1632,10 +1664,11 @@ final class MethodWriter extends MethodVisitor {
                 boolean successorBlockChanged =
                         basicBlock.frame.merge(symbolTable, successorBlock.frame, outgoingEdge.info);
                 if (successorBlockChanged && successorBlock.nextListElement == null) {
-                    // If successorBlock has changed it must be processed. Thus, if it is not already in the
-                    // list of blocks to process, add it to this list.
-                    successorBlock.nextListElement = listOfBlocksToProcess;
-                    listOfBlocksToProcess = successorBlock;
+                    // If successorBlock has changed it must be processed. Thus, if it is not
+                    // already in the blocks to process, add it to them.
+                    numberOfBlocksToProcess =
+                            addBlockToProcess(
+                                    blocksToProcess, numberOfBlocksToProcess, successorBlock);
                 }
                 outgoingEdge = outgoingEdge.nextEdge;
             }
@@ -1644,7 +1677,7 @@ final class MethodWriter extends MethodVisitor {
         // Loop over all the basic blocks and visit the stack map frames that must be stored in the
         // StackMapTable attribute. Also replace unreachable code with NOP* ATHROW, and remove it from
         // exception handler ranges.
-        Label basicBlock = firstBasicBlock;
+        basicBlock = firstBasicBlock;
         while (basicBlock != null) {
             if ((basicBlock.flags & (Label.FLAG_JUMP_TARGET | Label.FLAG_REACHABLE))
                     == (Label.FLAG_JUMP_TARGET | Label.FLAG_REACHABLE)) {
@@ -1679,6 +1712,74 @@ final class MethodWriter extends MethodVisitor {
         this.maxStack = maxStackSize;
     }
 
+    /**
+     * Adds a basic block to the blocks to process of {@link #computeAllFrames}.
+     *
+     * @param blocksToProcess         a binary heap of basic blocks, ordered by bytecode offset.
+     * @param numberOfBlocksToProcess the number of basic blocks in blocksToProcess.
+     * @param basicBlock              a basic block which is not in blocksToProcess.
+     * @return the new number of basic blocks in blocksToProcess.
+     */
+    private static int addBlockToProcess(
+            final Label[] blocksToProcess,
+            final int numberOfBlocksToProcess,
+            final Label basicBlock) {
+        basicBlock.nextListElement = Label.EMPTY_LIST;
+        // Move the parents of the new block down, until its position in the heap is found.
+        int index = numberOfBlocksToProcess;
+        while (index > 0) {
+            int parentIndex = (index - 1) >> 1;
+            Label parentBlock = blocksToProcess[parentIndex];
+            if (parentBlock.bytecodeOffset <= basicBlock.bytecodeOffset) {
+                break;
+            }
+            blocksToProcess[index] = parentBlock;
+            index = parentIndex;
+        }
+        blocksToProcess[index] = basicBlock;
+        return numberOfBlocksToProcess + 1;
+    }
+
+    /**
+     * Removes the basic block with the smallest bytecode offset from the blocks to process of
+     * {@link #computeAllFrames}.
+     *
+     * @param blocksToProcess         a non empty binary heap of basic blocks, ordered by bytecode
+     *                                offset.
+     * @param numberOfBlocksToProcess the number of basic blocks in blocksToProcess.
+     * @return the new number of basic blocks in blocksToProcess.
+     */
+    private static int removeFirstBlockToProcess(
+            final Label[] blocksToProcess, final int numberOfBlocksToProcess) {
+        blocksToProcess[0].nextListElement = null;
+        int size = numberOfBlocksToProcess - 1;
+        Label lastBlock = blocksToProcess[size];
+        blocksToProcess[size] = null;
+        if (size == 0) {
+            return 0;
+        }
+        // Move the smallest children of the root up, until the position of lastBlock is found.
+        int index = 0;
+        while (true) {
+            int childIndex = 2 * index + 1;
+            if (childIndex >= size) {
+                break;
+            }
+            if (childIndex + 1 < size
+                    && blocksToProcess[childIndex + 1].bytecodeOffset
+                            < blocksToProcess[childIndex].bytecodeOffset) {
+                ++childIndex;
+            }
+            if (lastBlock.bytecodeOffset <= blocksToProcess[childIndex].bytecodeOffset) {
+                break;
+            }
+            blocksToProcess[index] = blocksToProcess[childIndex];
+            index = childIndex;
+        }
+        blocksToProcess[index] = lastBlock;
+        return size;
+    }
+
     /**
      * Computes the maximum stack size of the method.
      */
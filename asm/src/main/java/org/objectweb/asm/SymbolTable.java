@@ -27,6 +27,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.util.Arrays;
+
 /**
  * The constant pool entries, the BootstrapMethods attribute entries and the (ASM specific) type
  * table entries of a class.
@@ -131,6 +133,15 @@ final class SymbolTable {
      */
     private Entry[] entries;
 
+    /**
+     * The constant pool tags whose items, in the constant pool of {@link #sourceClassReader}, have
+     * not been added to {@link #entries} yet. The bit at position <tt>tag</tt> is set if the items
+     * of this tag have not been added yet. These items are added lazily, the first time a constant
+     * with the same tag is looked up, so that the source items whose tag is never looked up are never
+     * decoded nor hashed.
+     */
+    private int sourceConstantPoolTags;
+
     /**
      * The number of constant pool items in {@link #constantPool}, plus 1. The first constant pool
      * item has index 1, and long and double items count for two items.
@@ -174,25 +185,69 @@ final class SymbolTable {
     /**
      * Constructs a new, empty SymbolTable for the given ClassWriter.
      *
-     * @param classWriter a ClassWriter.
+     * @param classWriter          a ClassWriter.
+     * @param constantPoolSizeHint the expected size in bytes of the constant pool, or 0 to use a
+     *                             default initial capacity.
+     */
+    SymbolTable(final ClassWriter classWriter, final int constantPoolSizeHint) {
+        this(classWriter, constantPoolSizeHint, null);
+    }
+
+    /**
+     * Constructs a new, empty SymbolTable for the given ClassWriter, reusing the internal arrays of a
+     * previous SymbolTable if they are large enough.
+     *
+     * @param classWriter          a ClassWriter.
+     * @param constantPoolSizeHint the expected size in bytes of the constant pool, or 0 to use a
+     *                             default initial capacity.
+     * @param previousSymbolTable  a SymbolTable which is no longer used, whose internal arrays must
+     *                             be reused, or <tt>null</tt>.
      */
-    SymbolTable(final ClassWriter classWriter) {
+    SymbolTable(
+            final ClassWriter classWriter,
+            final int constantPoolSizeHint,
+            final SymbolTable previousSymbolTable) {
         this.classWriter = classWriter;
         this.sourceClassReader = null;
-        this.entries = new Entry[256];
         this.constantPoolCount = 1;
-        this.constantPool = new ByteVector();
+        allocateArrays(previousSymbolTable, 256, constantPoolSizeHint);
     }
 
     /**
      * Constructs a new SymbolTable for the given ClassWriter, initialized with the constant pool and
      * bootstrap methods of the given ClassReader.
      *
-     * @param classWriter a ClassWriter.
-     * @param classReader the ClassReader whose constant pool and bootstrap methods must be copied to
-     *                    initialize the SymbolTable.
+     * @param classWriter          a ClassWriter.
+     * @param classReader          the ClassReader whose constant pool and bootstrap methods must be
+     *                             copied to initialize the SymbolTable.
+     * @param constantPoolSizeHint the expected size in bytes of the constant pool, or 0 to infer it
+     *                             from the size of the constant pool of classReader.
+     */
+    SymbolTable(
+            final ClassWriter classWriter,
+            final ClassReader classReader,
+            final int constantPoolSizeHint) {
+        this(classWriter, classReader, constantPoolSizeHint, null);
+    }
+
+    /**
+     * Constructs a new SymbolTable for the given ClassWriter, initialized with the constant pool and
+     * bootstrap methods of the given ClassReader, and reusing the internal arrays of a previous
+     * SymbolTable if they are large enough.
+     *
+     * @param classWriter          a ClassWriter.
+     * @param classReader          the ClassReader whose constant pool and bootstrap methods must be
+     *                             copied to initialize the SymbolTable.
+     * @param constantPoolSizeHint the expected size in bytes of the constant pool, or 0 to infer it
+     *                             from the size of the constant pool of classReader.
+     * @param previousSymbolTable  a SymbolTable which is no longer used, whose internal arrays must
+     *                             be reused, or <tt>null</tt>.
      */
-    SymbolTable(final ClassWriter classWriter, final ClassReader classReader) {
+    SymbolTable(
+            final ClassWriter classWriter,
+            final ClassReader classReader,
+            final int constantPoolSizeHint,
+            final SymbolTable previousSymbolTable) {
         this.classWriter = classWriter;
         this.sourceClassReader = classReader;
 
@@ -201,86 +256,27 @@ final class SymbolTable {
         int constantPoolOffset = classReader.getItem(1) - 1;
         int constantPoolLength = classReader.header - constantPoolOffset;
         constantPoolCount = classReader.getItemCount();
-        constantPool = new ByteVector(constantPoolLength);
+        // By default, leave some room for the new constants, to avoid enlarging the constant pool (and
+        // thus copying it entirely) as soon as a constant is added. Also reserve enough space in
+        // 'entries' to avoid too many hash set collisions when the constant pool items are added to it
+        // (entries is not dynamically resized when they are added, see indexSourceConstantPool), and
+        // to account for bootstrap method entries.
+        allocateArrays(
+                previousSymbolTable,
+                constantPoolCount * 2,
+                Math.max(constantPoolLength + (constantPoolLength >> 2), constantPoolSizeHint));
         constantPool.putByteArray(inputBytes, constantPoolOffset, constantPoolLength);
 
-        // Add the constant pool items in the symbol table entries. Reserve enough space in 'entries' to
-        // avoid too many hash set collisions (entries is not dynamically resized by the addConstant*
-        // method calls below), and to account for bootstrap method entries.
-        entries = new Entry[constantPoolCount * 2];
-        char[] charBuffer = new char[classReader.getMaxStringLength()];
         int itemIndex = 1;
         while (itemIndex < constantPoolCount) {
-            int itemOffset = classReader.getItem(itemIndex);
-            int itemTag = inputBytes[itemOffset - 1];
-            int nameAndTypeItemOffset;
-            switch (itemTag) {
-                case Symbol.CONSTANT_FIELDREF_TAG:
-                case Symbol.CONSTANT_METHODREF_TAG:
-                case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
-                    nameAndTypeItemOffset =
-                            classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
-                    addConstantMemberReference(
-                            itemIndex,
-                            itemTag,
-                            classReader.readClass(itemOffset, charBuffer),
-                            classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
-                            classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
-                    break;
-                case Symbol.CONSTANT_INTEGER_TAG:
-                case Symbol.CONSTANT_FLOAT_TAG:
-                    addConstantInteger(itemIndex, itemTag, classReader.readInt(itemOffset));
-                    break;
-                case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
-                    addConstantNameAndType(
-                            itemIndex,
-                            classReader.readUTF8(itemOffset, charBuffer),
-                            classReader.readUTF8(itemOffset + 2, charBuffer));
-                    break;
-                case Symbol.CONSTANT_LONG_TAG:
-                case Symbol.CONSTANT_DOUBLE_TAG:
-                    addConstantLong(itemIndex, itemTag, classReader.readLong(itemOffset));
-                    break;
-                case Symbol.CONSTANT_UTF8_TAG:
-                    addConstantUtf8(itemIndex, classReader.readUTF(itemIndex, charBuffer));
-                    break;
-                case Symbol.CONSTANT_METHOD_HANDLE_TAG:
-                    int memberRefItemOffset =
-                            classReader.getItem(classReader.readUnsignedShort(itemOffset + 1));
-                    nameAndTypeItemOffset =
-                            classReader.getItem(classReader.readUnsignedShort(memberRefItemOffset + 2));
-                    addConstantMethodHandle(
-                            itemIndex,
-                            classReader.readByte(itemOffset),
-                            classReader.readClass(memberRefItemOffset, charBuffer),
-                            classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
-                            classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
-                    break;
-                case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
-                    nameAndTypeItemOffset =
-                            classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
-                    addConstantInvokeDynamic(
-                            itemIndex,
-                            classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
-                            classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer),
-                            classReader.readUnsignedShort(itemOffset));
-                    break;
-                case Symbol.CONSTANT_STRING_TAG:
-                case Symbol.CONSTANT_CLASS_TAG:
-                case Symbol.CONSTANT_METHOD_TYPE_TAG:
-                case Symbol.CONSTANT_MODULE_TAG:
-                case Symbol.CONSTANT_PACKAGE_TAG:
-                    addConstantUtf8Reference(
-                            itemIndex, itemTag, classReader.readUTF8(itemOffset, charBuffer));
-                    break;
-                default:
-                    throw new IllegalArgumentException();
-            }
+            int itemTag = inputBytes[classReader.getItem(itemIndex) - 1];
+            sourceConstantPoolTags |= 1 << itemTag;
             itemIndex +=
                     (itemTag == Symbol.CONSTANT_LONG_TAG || itemTag == Symbol.CONSTANT_DOUBLE_TAG) ? 2 : 1;
         }
 
         // Copy the BootstrapMethods 'bootstrap_methods' array binary content, if any.
+        char[] charBuffer = new char[classReader.getMaxStringLength()];
         int currentAttributeOffset = classReader.getFirstAttributeOffset();
         for (int i = classReader.readUnsignedShort(currentAttributeOffset - 2); i > 0; --i) {
             String attributeName = classReader.readUTF8(currentAttributeOffset, charBuffer);
@@ -316,6 +312,130 @@ final class SymbolTable {
         }
     }
 
+    /**
+     * Initializes {@link #entries}, {@link #constantPool} and {@link #typeTable}, by reusing the
+     * arrays of the given SymbolTable if they are large enough, or by allocating new arrays
+     * otherwise.
+     *
+     * @param previousSymbolTable  a SymbolTable which is no longer used, or <tt>null</tt>.
+     * @param entriesCapacity      the minimum capacity of {@link #entries}.
+     * @param constantPoolCapacity the minimum capacity in bytes of {@link #constantPool}, or 0 to use
+     *                             a default capacity.
+     */
+    private void allocateArrays(
+            final SymbolTable previousSymbolTable,
+            final int entriesCapacity,
+            final int constantPoolCapacity) {
+        if (previousSymbolTable != null && previousSymbolTable.entries.length >= entriesCapacity) {
+            entries = previousSymbolTable.entries;
+            Arrays.fill(entries, null);
+        } else {
+            entries = new Entry[entriesCapacity];
+        }
+        if (previousSymbolTable != null
+                && previousSymbolTable.constantPool.data.length >= constantPoolCapacity) {
+            constantPool = previousSymbolTable.constantPool;
+            constantPool.length = 0;
+        } else {
+            constantPool =
+                    constantPoolCapacity > 0 ? new ByteVector(constantPoolCapacity) : new ByteVector();
+        }
+        if (previousSymbolTable != null && previousSymbolTable.typeTable != null) {
+            typeTable = previousSymbolTable.typeTable;
+            Arrays.fill(typeTable, 0, previousSymbolTable.typeCount, null);
+        }
+    }
+
+    /**
+     * Adds the items of the constant pool of {@link #sourceClassReader} which have the given tag to
+     * {@link #entries}, if this has not already been done.
+     *
+     * @param tag the tag of the constant pool items that are going to be looked up in {@link
+     *            #entries}.
+     */
+    private void indexSourceConstantPool(final int tag) {
+        if ((sourceConstantPoolTags & (1 << tag)) == 0) {
+            return;
+        }
+        sourceConstantPoolTags &= ~(1 << tag);
+        ClassReader classReader = sourceClassReader;
+        byte[] inputBytes = classReader.b;
+        int constantPoolCount = classReader.getItemCount();
+        char[] charBuffer = new char[classReader.getMaxStringLength()];
+        int itemIndex = 1;
+        while (itemIndex < constantPoolCount) {
+            int itemOffset = classReader.getItem(itemIndex);
+            int itemTag = inputBytes[itemOffset - 1];
+            if (itemTag == tag) {
+                int nameAndTypeItemOffset;
+                switch (itemTag) {
+                    case Symbol.CONSTANT_FIELDREF_TAG:
+                    case Symbol.CONSTANT_METHODREF_TAG:
+                    case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
+                        nameAndTypeItemOffset =
+                                classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
+                        addConstantMemberReference(
+                                itemIndex,
+                                itemTag,
+                                classReader.readClass(itemOffset, charBuffer),
+                                classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
+                                classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
+                        break;
+                    case Symbol.CONSTANT_INTEGER_TAG:
+                    case Symbol.CONSTANT_FLOAT_TAG:
+                        addConstantInteger(itemIndex, itemTag, classReader.readInt(itemOffset));
+                        break;
+                    case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+                        addConstantNameAndType(
+                                itemIndex,
+                                classReader.readUTF8(itemOffset, charBuffer),
+                                classReader.readUTF8(itemOffset + 2, charBuffer));
+                        break;
+                    case Symbol.CONSTANT_LONG_TAG:
+                    case Symbol.CONSTANT_DOUBLE_TAG:
+                        addConstantLong(itemIndex, itemTag, classReader.readLong(itemOffset));
+                        break;
+                    case Symbol.CONSTANT_UTF8_TAG:
+                        addConstantUtf8(itemIndex, classReader.readUTF(itemIndex, charBuffer));
+                        break;
+                    case Symbol.CONSTANT_METHOD_HANDLE_TAG:
+                        int memberRefItemOffset =
+                                classReader.getItem(classReader.readUnsignedShort(itemOffset + 1));
+                        nameAndTypeItemOffset =
+                                classReader.getItem(classReader.readUnsignedShort(memberRefItemOffset + 2));
+                        addConstantMethodHandle(
+                                itemIndex,
+                                classReader.readByte(itemOffset),
+                                classReader.readClass(memberRefItemOffset, charBuffer),
+                                classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
+                                classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
+                        break;
+                    case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
+                        nameAndTypeItemOffset =
+                                classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
+                        addConstantInvokeDynamic(
+                                itemIndex,
+                                classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
+                                classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer),
+                                classReader.readUnsignedShort(itemOffset));
+                        break;
+                    case Symbol.CONSTANT_STRING_TAG:
+                    case Symbol.CONSTANT_CLASS_TAG:
+                    case Symbol.CONSTANT_METHOD_TYPE_TAG:
+                    case Symbol.CONSTANT_MODULE_TAG:
+                    case Symbol.CONSTANT_PACKAGE_TAG:
+                        addConstantUtf8Reference(
+                                itemIndex, itemTag, classReader.readUTF8(itemOffset, charBuffer));
+                        break;
+                    default:
+                        throw new IllegalArgumentException();
+                }
+            }
+            itemIndex +=
+                    (itemTag == Symbol.CONSTANT_LONG_TAG || itemTag == Symbol.CONSTANT_DOUBLE_TAG) ? 2 : 1;
+        }
+    }
+
     /**
      * @return the ClassReader from which this SymbolTable was constructed, or <tt>null</tt> if it was
      * constructed from scratch.
@@ -572,6 +692,7 @@ final class SymbolTable {
     private Entry addConstantMemberReference(
             final int tag, final String owner, final String name, final String descriptor) {
         int hashCode = hash(tag, owner, name, descriptor);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag
@@ -651,6 +772,7 @@ final class SymbolTable {
      */
     private Symbol addConstantInteger(final int tag, final int value) {
         int hashCode = hash(tag, value);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag && entry.hashCode == hashCode && entry.data == value) {
@@ -706,6 +828,7 @@ final class SymbolTable {
      */
     private Symbol addConstantLong(final int tag, final long value) {
         int hashCode = hash(tag, value);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag && entry.hashCode == hashCode && entry.data == value) {
@@ -741,6 +864,7 @@ final class SymbolTable {
     int addConstantNameAndType(final String name, final String descriptor) {
         final int tag = Symbol.CONSTANT_NAME_AND_TYPE_TAG;
         int hashCode = hash(tag, name, descriptor);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag
@@ -776,6 +900,7 @@ final class SymbolTable {
      */
     int addConstantUtf8(final String value) {
         int hashCode = hash(Symbol.CONSTANT_UTF8_TAG, value);
+        indexSourceConstantPool(Symbol.CONSTANT_UTF8_TAG);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == Symbol.CONSTANT_UTF8_TAG
@@ -823,6 +948,7 @@ final class SymbolTable {
         // Note that we don't need to include isInterface in the hash computation, because it is
         // redundant with owner (we can't have the same owner with different isInterface values).
         int hashCode = hash(tag, owner, name, descriptor, referenceKind);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag
@@ -912,6 +1038,7 @@ final class SymbolTable {
             final String name, final String descriptor, final int bootstrapMethodIndex) {
         final int tag = Symbol.CONSTANT_INVOKE_DYNAMIC_TAG;
         int hashCode = hash(tag, name, descriptor, bootstrapMethodIndex);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag
@@ -980,6 +1107,7 @@ final class SymbolTable {
      */
     private Symbol addConstantUtf8Reference(final int tag, final String value) {
         int hashCode = hash(tag, value);
+        indexSourceConstantPool(tag);
         Entry entry = get(hashCode);
         while (entry != null) {
             if (entry.tag == tag && entry.hashCode == hashCode && entry.value.equals(value)) {
@@ -1156,8 +1284,12 @@ final class SymbolTable {
      * corresponding to the common super class of the given types.
      */
     int addMergedType(final int typeTableIndex1, final int typeTableIndex2) {
-        // TODO sort the arguments? The merge result should be independent of their order.
-        long data = typeTableIndex1 | (((long) typeTableIndex2) << 32);
+        // The merge result is independent of the order of the arguments, so we sort them, in order to
+        // compute the merge of two types only once, whatever the order in which they are merged.
+        long data =
+                typeTableIndex1 < typeTableIndex2
+                        ? typeTableIndex1 | (((long) typeTableIndex2) << 32)
+                        : typeTableIndex2 | (((long) typeTableIndex1) << 32);
         int hashCode = hash(Symbol.MERGED_TYPE_TAG, typeTableIndex1 + typeTableIndex2);
         Entry entry = get(hashCode);
         while (entry != null) {
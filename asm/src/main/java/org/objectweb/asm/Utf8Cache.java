@@ -0,0 +1,142 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.objectweb.asm;
+
+/**
+ * A cache of the strings decoded from CONSTANT_Utf8 constant pool entries, which can be shared
+ * between several {@link ClassReader} objects (see {@link ClassReader#setUtf8Cache}). This cache
+ * avoids decoding and allocating again the strings which are common to many classes (such as
+ * "java/lang/Object", "()V" or "Code"), and makes the visitors of these classes receive the same
+ * String instances. This reduces the memory used to retain the results of these visits (e.g. many
+ * tree nodes at once).
+ * <p>
+ * <p>This cache is a fixed size table, indexed by a hash code of the raw UTF8 bytes of the strings.
+ * Each slot contains at most one string, which is replaced when another string with the same index
+ * is decoded. Only the strings made of ASCII characters are cached (this is the case of almost all
+ * the class, field and method names and descriptors), which makes it possible to compare a cached
+ * string directly with the raw bytes of a constant pool entry. This class is thread safe, and does
+ * not use any lock: a thread can sometimes miss a string just cached by another thread, which is
+ * harmless.
+ */
+public final class Utf8Cache {
+
+    /**
+     * The default number of slots of a cache.
+     */
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The cached strings, indexed by the hash code of their raw UTF8 bytes (modulo the length of
+     * this array, which is a power of two).
+     */
+    private final String[] entries;
+
+    /**
+     * Constructs a new {@link Utf8Cache} with a default number of slots.
+     */
+    public Utf8Cache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@link Utf8Cache}.
+     *
+     * @param capacity the number of strings that can be cached. It is rounded up to a power of two.
+     */
+    public Utf8Cache(final int capacity) {
+        int length = 1;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        entries = new String[length];
+    }
+
+    /**
+     * Returns the string corresponding to the given UTF8 bytes of a {@link ClassReader}, either from
+     * this cache or by decoding these bytes.
+     *
+     * @param classReader the class reader containing the bytes to be decoded.
+     * @param utfOffset   the start offset of the UTF8 string to be read in {@link ClassReader#b}.
+     * @param utfLength   the length of the UTF8 string to be read.
+     * @param charBuffer  the buffer to be used to decode the string, if needed. This buffer must be
+     *                    sufficiently large. It is not automatically resized.
+     * @return the String corresponding to the given UTF8 bytes.
+     */
+    String get(
+            final ClassReader classReader,
+            final int utfOffset,
+            final int utfLength,
+            final char[] charBuffer) {
+        byte[] classFileBuffer = classReader.b;
+        int endOffset = utfOffset + utfLength;
+        int hashCode = 0;
+        for (int i = utfOffset; i < endOffset; ++i) {
+            hashCode = 31 * hashCode + classFileBuffer[i];
+        }
+        // Spread the high bits of the hash code, which are otherwise ignored by the index mask.
+        int index = (hashCode ^ (hashCode >>> 16)) & (entries.length - 1);
+        String value = entries[index];
+        if (value != null && equals(value, classFileBuffer, utfOffset, utfLength)) {
+            return value;
+        }
+        value = classReader.readUTF(utfOffset, utfLength, charBuffer);
+        // A string contains only ASCII characters if and only if its modified UTF8 encoding has one
+        // byte per character (the null character and the non ASCII ones use 2 or 3 bytes).
+        if (value.length() == utfLength) {
+            entries[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether a string made of ASCII characters is equal to the given UTF8 bytes.
+     *
+     * @param value           a string made of ASCII characters.
+     * @param classFileBuffer a byte array.
+     * @param utfOffset       the start offset of the UTF8 string in classFileBuffer.
+     * @param utfLength       the length of the UTF8 string.
+     * @return whether the given string is equal to the given UTF8 string.
+     */
+    private static boolean equals(
+            final String value,
+            final byte[] classFileBuffer,
+            final int utfOffset,
+            final int utfLength) {
+        if (value.length() != utfLength) {
+            return false;
+        }
+        for (int i = 0; i < utfLength; ++i) {
+            // Non ASCII bytes are negative, and thus never equal to a char.
+            if (value.charAt(i) != classFileBuffer[utfOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
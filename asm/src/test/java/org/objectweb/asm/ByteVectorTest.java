@@ -126,6 +126,17 @@ public class ByteVectorTest {
         assertContains(byteVector, 1, 2, 3);
     }
 
+    @Test
+    public void testEnsureCapacity() {
+        ByteVector byteVector = new ByteVector(2);
+        byteVector.putShort(0x0102);
+        byteVector.ensureCapacity(1);
+        assertEquals(2, byteVector.data.length);
+        byteVector.ensureCapacity(100);
+        assertEquals(100, byteVector.data.length);
+        assertContains(byteVector, 1, 2);
+    }
+
     private void assertContains(final ByteVector byteVector, final int... values) {
         assertTrue(byteVector.data.length >= values.length);
         assertEquals(values.length, byteVector.length);
@@ -0,0 +1,179 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+// contributors may be used to endorse or promote products derived from
+// this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+
+/**
+ * ClassHierarchy tests.
+ */
+public class ClassHierarchyTest extends AsmTest {
+
+    @Test
+    public void testAccessors() {
+        ClassHierarchy classHierarchy = new ClassHierarchy();
+        assertNull(classHierarchy.getSuperClass("java/lang/Object"));
+        assertEquals("java/util/AbstractList", classHierarchy.getSuperClass("java/util/ArrayList"));
+        assertArrayEquals(
+                new String[] {"java/util/Collection"}, classHierarchy.getInterfaces("java/util/List"));
+        assertTrue(classHierarchy.isInterface("java/util/List"));
+        assertFalse(classHierarchy.isInterface("java/util/ArrayList"));
+        assertThrows(TypeNotPresentException.class, () -> classHierarchy.getSuperClass("-"));
+    }
+
+    @Test
+    public void testIsAssignableFrom() {
+        ClassHierarchy classHierarchy = new ClassHierarchy(null);
+        assertTrue(classHierarchy.isAssignableFrom("java/lang/Object", "java/lang/Runnable"));
+        assertTrue(classHierarchy.isAssignableFrom("java/lang/Object", "java/lang/Integer"));
+        assertTrue(classHierarchy.isAssignableFrom("java/lang/Number", "java/lang/Integer"));
+        assertTrue(classHierarchy.isAssignableFrom("java/util/Collection", "java/util/ArrayList"));
+        assertTrue(classHierarchy.isAssignableFrom("java/util/Collection", "java/util/List"));
+        assertFalse(classHierarchy.isAssignableFrom("java/lang/Integer", "java/lang/Number"));
+        assertFalse(classHierarchy.isAssignableFrom("java/util/List", "java/util/Collection"));
+        assertFalse(classHierarchy.isAssignableFrom("java/lang/Number", "java/util/List"));
+    }
+
+    /**
+     * Tests that {@link ClassHierarchy#getCommonSuperClass} returns the same results as {@link
+     * ClassWriter#getCommonSuperClass}.
+     */
+    @Test
+    public void testGetCommonSuperClass() {
+        ClassHierarchy classHierarchy = new ClassHierarchy();
+        ClassWriter classWriter = new ClassWriter(0);
+        String[] types = {
+            "java/lang/Object",
+            "java/lang/Integer",
+            "java/lang/Long",
+            "java/lang/Runnable",
+            "java/lang/Thread",
+            "java/lang/IndexOutOfBoundsException",
+            "java/lang/AssertionError",
+            "java/util/ArrayList",
+            "java/util/LinkedList",
+            "java/util/List",
+            "java/util/Collection"
+        };
+        for (String type1 : types) {
+            for (String type2 : types) {
+                assertEquals(
+                        classWriter.getCommonSuperClass(type1, type2),
+                        classHierarchy.getCommonSuperClass(type1, type2));
+            }
+        }
+    }
+
+    @Test
+    public void testAddClass() {
+        AtomicInteger lookups = new AtomicInteger();
+        ClassHierarchy classHierarchy =
+                new ClassHierarchy() {
+                    @Override
+                    protected InputStream getClassFileAsStream(final String type) {
+                        lookups.incrementAndGet();
+                        return null;
+                    }
+                };
+        classHierarchy.addClass("java/lang/Object", Opcodes.ACC_PUBLIC, null, null);
+        classHierarchy.addClass("pkg/I", Opcodes.ACC_INTERFACE, "java/lang/Object", null);
+        classHierarchy.addClass("pkg/A", Opcodes.ACC_PUBLIC, "java/lang/Object", new String[] {"pkg/I"});
+        classHierarchy.addClass("pkg/B", Opcodes.ACC_PUBLIC, "pkg/A", null);
+        classHierarchy.addClass("pkg/C", Opcodes.ACC_PUBLIC, "pkg/A", null);
+
+        assertEquals("pkg/A", classHierarchy.getCommonSuperClass("pkg/B", "pkg/C"));
+        assertEquals("pkg/A", classHierarchy.getCommonSuperClass("pkg/C", "pkg/B"));
+        assertEquals("pkg/I", classHierarchy.getCommonSuperClass("pkg/B", "pkg/I"));
+        assertTrue(classHierarchy.isAssignableFrom("pkg/I", "pkg/C"));
+        assertEquals(0, lookups.get());
+        assertThrows(TypeNotPresentException.class, () -> classHierarchy.isInterface("pkg/D"));
+        assertEquals(1, lookups.get());
+    }
+
+    /**
+     * Tests that the classes whose version is not supported by {@link ClassReader} can be added to a
+     * ClassHierarchy, since only their header is needed.
+     */
+    @Test
+    public void testGetClassInfoWithUnsupportedClassVersion() {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(
+                Opcodes.V1_8, Opcodes.ACC_PUBLIC, "pkg/A", null, "pkg/B", new String[] {"pkg/I"});
+        classWriter.visitEnd();
+        byte[] classFile = classWriter.toByteArray();
+        // Set the major version to a version not supported by ClassReader.
+        classFile[6] = (byte) 0x7F;
+        classFile[7] = (byte) 0xFF;
+        ClassHierarchy classHierarchy =
+                new ClassHierarchy() {
+                    @Override
+                    protected InputStream getClassFileAsStream(final String type) {
+                        return new ByteArrayInputStream(classFile);
+                    }
+                };
+        assertEquals("pkg/B", classHierarchy.getSuperClass("pkg/A"));
+        assertArrayEquals(new String[] {"pkg/I"}, classHierarchy.getInterfaces("pkg/A"));
+        assertFalse(classHierarchy.isInterface("pkg/A"));
+    }
+
+    /**
+     * Tests that a ClassWriter using a ClassHierarchy computes the same frames as with the default
+     * {@link ClassWriter#getCommonSuperClass} method.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testClassWriterWithClassHierarchy(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        if (classParameter == PrecompiledClass.JDK3_ALL_INSTRUCTIONS
+                || classParameter == PrecompiledClass.JDK3_LARGE_METHOD) {
+            // These classes contain JSR/RET instructions, incompatible with COMPUTE_FRAMES.
+            return;
+        }
+        ClassReader classReader = new ClassReader(classParameter.getBytes());
+        ClassWriter expectedClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        classReader.accept(expectedClassWriter, 0);
+        ClassWriter classWriter =
+                new ClassWriter(null, ClassWriter.COMPUTE_FRAMES, new ClassHierarchy());
+        classReader.accept(classWriter, 0);
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    }
+}
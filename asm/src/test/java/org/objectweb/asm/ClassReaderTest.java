@@ -27,6 +27,7 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -34,8 +35,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.objectweb.asm.test.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Test;
@@ -101,6 +108,37 @@ public class ClassReaderTest extends AsmTest implements Opcodes {
         assertNotNull(interfaces);
     }
 
+    /**
+     * Tests that the header accessors do not allocate the cache of the CONSTANT_Utf8 entries.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testHeaderAccessorsDoNotAllocateUtf8Cache(
+            final PrecompiledClass classParameter, final Api apiParameter) throws Exception {
+        ClassReader classReader = new ClassReader(classParameter.getBytes());
+        ClassReader classReaderWithUtf8Cache = new ClassReader(classParameter.getBytes());
+        classReaderWithUtf8Cache.setUtf8Cache(new Utf8Cache());
+        for (ClassReader reader : new ClassReader[] {classReader, classReaderWithUtf8Cache}) {
+            assertEquals(classParameter.getInternalName(), reader.getClassName());
+            reader.getSuperName();
+            reader.getInterfaces();
+            reader.getAccess();
+            assertNull(getConstantUtf8Values(reader));
+        }
+
+        char[] charBuffer = new char[classParameter.getBytes().length];
+        String className = classReader.readClass(classReader.header + 2, charBuffer);
+        assertEquals(classParameter.getInternalName(), className);
+        assertNotNull(getConstantUtf8Values(classReader));
+        assertEquals(className, classReader.getClassName());
+    }
+
+    private static Object getConstantUtf8Values(final ClassReader classReader) throws Exception {
+        Field field = ClassReader.class.getDeclaredField("constantUtf8Values");
+        field.setAccessible(true);
+        return field.get(classReader);
+    }
+
     /**
      * Tests {@link ClassReader(byte[])} and the basic ClassReader accessors.
      */
@@ -194,6 +232,245 @@ public class ClassReaderTest extends AsmTest implements Opcodes {
         assertNotNull(classReader.getInterfaces());
     }
 
+    /**
+     * Tests {@link ClassReader(byte[],int,int,ClassReader)}, with classes of various sizes read one
+     * after the other with recycled readers.
+     */
+    @Test
+    public void testRecyclingConstructor() {
+        ClassReader previousClassReader = null;
+        for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+            byte[] classFile = precompiledClass.getBytes();
+            ClassReader classReader =
+                    new ClassReader(classFile, 0, classFile.length, previousClassReader);
+            ClassReader expectedClassReader = new ClassReader(classFile);
+            assertEquals(expectedClassReader.getItemCount(), classReader.getItemCount());
+            for (int i = 1; i < classReader.getItemCount(); ++i) {
+                assertEquals(expectedClassReader.getItem(i), classReader.getItem(i));
+            }
+            assertEquals(precompiledClass.getInternalName(), classReader.getClassName());
+            assertEquals(expectedClassReader.getSuperName(), classReader.getSuperName());
+            assertArrayEquals(expectedClassReader.getInterfaces(), classReader.getInterfaces());
+
+            ClassWriter classWriter = new ClassWriter(0);
+            classReader.accept(classWriter, 0);
+            ClassWriter expectedClassWriter = new ClassWriter(0);
+            expectedClassReader.accept(expectedClassWriter, 0);
+            assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+            previousClassReader = classReader;
+        }
+    }
+
+    /**
+     * Tests {@link ClassReader(java.io.InputStream)} with a stream which does not know its size.
+     */
+    @Test
+    public void testStreamConstructorWithUnknownSize() throws IOException {
+        byte[] classFile = new ClassReader(getClass().getName()).b;
+        InputStream inputStream =
+                new FilterInputStream(new ByteArrayInputStream(classFile)) {
+                    @Override
+                    public int available() {
+                        return 0;
+                    }
+                };
+        ClassReader classReader = new ClassReader(inputStream);
+        assertArrayEquals(classFile, classReader.b);
+        assertEquals(getClass().getName().replace('.', '/'), classReader.getClassName());
+    }
+
+    /**
+     * Tests {@link ClassReader(java.io.InputStream, int)}.
+     */
+    @Test
+    public void testStreamConstructorWithLength() throws IOException {
+        byte[] classFile = new ClassReader(getClass().getName()).b;
+        byte[] streamContent = new byte[classFile.length + 10];
+        System.arraycopy(classFile, 0, streamContent, 0, classFile.length);
+
+        ClassReader classReader =
+                new ClassReader(new ByteArrayInputStream(streamContent), classFile.length);
+        assertArrayEquals(classFile, classReader.b);
+        classReader = new ClassReader(new ByteArrayInputStream(classFile), -1);
+        assertArrayEquals(classFile, classReader.b);
+        assertThrows(
+                IOException.class,
+                () -> new ClassReader(new ByteArrayInputStream(classFile), classFile.length + 1));
+        assertThrows(IOException.class, () -> new ClassReader((InputStream) null, 10));
+    }
+
+    /**
+     * Tests {@link ClassReader(java.io.InputStream, byte[])}.
+     */
+    @Test
+    public void testStreamConstructorWithBuffer() throws IOException {
+        byte[] classFile = new ClassReader(getClass().getName()).b;
+
+        byte[] largeBuffer = new byte[classFile.length + 10];
+        ClassReader classReader = new ClassReader(new ByteArrayInputStream(classFile), largeBuffer);
+        assertTrue(classReader.b == largeBuffer);
+        assertEquals(getClass().getName().replace('.', '/'), classReader.getClassName());
+
+        byte[] exactBuffer = new byte[classFile.length];
+        classReader = new ClassReader(new ByteArrayInputStream(classFile), exactBuffer);
+        assertTrue(classReader.b == exactBuffer);
+        assertArrayEquals(classFile, classReader.b);
+
+        byte[] smallBuffer = new byte[16];
+        classReader = new ClassReader(new ByteArrayInputStream(classFile), smallBuffer);
+        assertTrue(classReader.b != smallBuffer);
+        assertEquals(getClass().getName().replace('.', '/'), classReader.getClassName());
+        ClassWriter classWriter = new ClassWriter(0);
+        classReader.accept(classWriter, 0);
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        new ClassReader(classFile).accept(expectedClassWriter, 0);
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    }
+
+    /**
+     * Tests {@link ClassReader(java.nio.ByteBuffer)} with heap, read-only and direct buffers.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testByteBufferConstructorAndAccessors(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        new ClassReader(classFile).accept(expectedClassWriter, 0);
+        byte[] expectedClassFile = expectedClassWriter.toByteArray();
+
+        ByteBuffer heapBuffer = ByteBuffer.allocate(classFile.length + 2);
+        heapBuffer.put((byte) 0).put(classFile).flip();
+        heapBuffer.position(1);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(classFile.length);
+        directBuffer.put(classFile).flip();
+        for (ByteBuffer byteBuffer :
+                new ByteBuffer[] {heapBuffer, heapBuffer.asReadOnlyBuffer(), directBuffer}) {
+            int position = byteBuffer.position();
+            ClassReader classReader = new ClassReader(byteBuffer);
+            assertEquals(position, byteBuffer.position());
+            assertEquals(classParameter.getInternalName(), classReader.getClassName());
+            ClassWriter classWriter = new ClassWriter(0);
+            classReader.accept(classWriter, 0);
+            assertArrayEquals(expectedClassFile, classWriter.toByteArray());
+        }
+        assertTrue(new ClassReader(heapBuffer).b == heapBuffer.array());
+    }
+
+    /**
+     * Tests the ClassReader accept method with a {@link MemberFilter}. The result must be the same
+     * as with a visitor which removes the rejected fields and methods.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testAcceptWithMemberFilter(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        ClassReader classReader = new ClassReader(classParameter.getBytes());
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        classReader.accept(
+                new ClassVisitor(apiParameter.value(), expectedClassWriter) {
+                    @Override
+                    public FieldVisitor visitField(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final Object value) {
+                        if ((access & ACC_STATIC) == 0) {
+                            return null;
+                        }
+                        return super.visitField(access, name, descriptor, signature, value);
+                    }
+
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        if (!name.equals("<init>")) {
+                            return null;
+                        }
+                        return super.visitMethod(access, name, descriptor, signature, exceptions);
+                    }
+                },
+                0);
+        ClassWriter classWriter = new ClassWriter(0);
+        classReader.accept(
+                classWriter,
+                new Attribute[0],
+                new MemberFilter() {
+                    @Override
+                    public boolean acceptField(
+                            final int access, final String name, final String descriptor) {
+                        return (access & ACC_STATIC) != 0;
+                    }
+
+                    @Override
+                    public boolean acceptMethod(
+                            final int access, final String name, final String descriptor) {
+                        return name.equals("<init>");
+                    }
+                },
+                0);
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    }
+
+    /**
+     * Tests that visiting each method with acceptMethod gives the same result as visiting it with a
+     * filter which rejects the other fields and methods.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testAcceptMethod(final PrecompiledClass classParameter, final Api apiParameter) {
+        ClassReader classReader = new ClassReader(classParameter.getBytes());
+        int[] methodInfoOffsets = classReader.getMethodInfoOffsets();
+        char[] charBuffer = new char[classReader.getMaxStringLength()];
+        for (final int methodInfoOffset : methodInfoOffsets) {
+            final String methodName = classReader.readUTF8(methodInfoOffset + 2, charBuffer);
+            final String methodDescriptor = classReader.readUTF8(methodInfoOffset + 4, charBuffer);
+            ClassWriter expectedClassWriter = new ClassWriter(0);
+            classReader.accept(
+                    expectedClassWriter,
+                    new Attribute[0],
+                    new MemberFilter() {
+                        @Override
+                        public boolean acceptField(
+                                final int access, final String name, final String descriptor) {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean acceptMethod(
+                                final int access, final String name, final String descriptor) {
+                            return name.equals(methodName) && descriptor.equals(methodDescriptor);
+                        }
+                    },
+                    0);
+            ClassWriter classWriter = new ClassWriter(0);
+            classReader.accept(
+                    classWriter,
+                    new Attribute[0],
+                    new MemberFilter() {
+                        @Override
+                        public boolean acceptField(
+                                final int access, final String name, final String descriptor) {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean acceptMethod(
+                                final int access, final String name, final String descriptor) {
+                            return false;
+                        }
+                    },
+                    0);
+            classReader.acceptMethod(classWriter, methodInfoOffset, new Attribute[0], 0);
+            assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+        }
+    }
+
     /**
      * Tests the ClassReader accept method with a default visitor.
      */
@@ -418,6 +695,98 @@ public class ClassReaderTest extends AsmTest implements Opcodes {
         assertTrue(success.get());
     }
 
+    /**
+     * Tests that reusing the label and frame arrays from one method to the next, with EXPAND_FRAMES,
+     * gives the same result as using new arrays for each method (which is the case with a subclass).
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testAcceptWithExpandFramesReusesArraysCorrectly(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        new ClassReader(classFile) {}.accept(expectedClassWriter, ClassReader.EXPAND_FRAMES);
+        ClassWriter classWriter = new ClassWriter(0);
+        new ClassReader(classFile).accept(classWriter, ClassReader.EXPAND_FRAMES);
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    }
+
+    /**
+     * Tests that a recycled ClassReader, whose arrays come from a class with larger methods, gives the
+     * same result as a new one.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testAcceptWithRecycledReader(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        byte[] previousClassFile = PrecompiledClass.JDK8_LARGE_METHOD.getBytes();
+        ClassReader previousClassReader =
+                new ClassReader(previousClassFile, 0, previousClassFile.length, null);
+        previousClassReader.accept(new ClassWriter(0), ClassReader.EXPAND_FRAMES);
+        ClassReader classReader =
+                new ClassReader(classFile, 0, classFile.length, previousClassReader);
+        ClassWriter classWriter = new ClassWriter(0);
+        classReader.accept(classWriter, ClassReader.EXPAND_FRAMES);
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        new ClassReader(classFile).accept(expectedClassWriter, ClassReader.EXPAND_FRAMES);
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    }
+
+    /**
+     * Tests that the labels passed to a custom code attribute are not reused for the next methods.
+     */
+    @Test
+    public void testAcceptWithCustomCodeAttribute() {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        MethodVisitor methodVisitor =
+                classWriter.visitMethod(Opcodes.ACC_STATIC, "m1", "()V", null, null);
+        methodVisitor.visitCode();
+        Label label = new Label();
+        methodVisitor.visitJumpInsn(Opcodes.GOTO, label);
+        methodVisitor.visitInsn(Opcodes.NOP);
+        methodVisitor.visitLabel(label);
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitAttribute(new LabelsAttribute(null));
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        methodVisitor = classWriter.visitMethod(Opcodes.ACC_STATIC, "m2", "()V", null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitAttribute(new LabelsAttribute(null));
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+
+        final List<Label[]> methodLabels = new ArrayList<Label[]>();
+        ClassReader classReader = new ClassReader(classWriter.toByteArray());
+        classReader.accept(
+                new ClassVisitor(Opcodes.ASM6) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        return new MethodVisitor(Opcodes.ASM6) {
+                            @Override
+                            public void visitAttribute(final Attribute attribute) {
+                                methodLabels.add(((LabelsAttribute) attribute).labels);
+                            }
+                        };
+                    }
+                },
+                new Attribute[]{new LabelsAttribute(null)},
+                0);
+
+        assertEquals(2, methodLabels.size());
+        assertEquals(6, methodLabels.get(0).length);
+        assertNotNull(methodLabels.get(0)[4]);
+        assertEquals(2, methodLabels.get(1).length);
+    }
+
     /**
      * Tests that reading an invalid class throws an exception.
      */
@@ -568,4 +937,43 @@ public class ClassReaderTest extends AsmTest implements Opcodes {
             };
         }
     }
+
+    /**
+     * A code attribute which keeps a reference to the labels passed to its read method.
+     */
+    private static class LabelsAttribute extends Attribute {
+
+        final Label[] labels;
+
+        LabelsAttribute(final Label[] labels) {
+            super("Labels");
+            this.labels = labels;
+        }
+
+        @Override
+        public boolean isCodeAttribute() {
+            return true;
+        }
+
+        @Override
+        protected Attribute read(
+                final ClassReader classReader,
+                final int offset,
+                final int length,
+                final char[] charBuffer,
+                final int codeAttributeOffset,
+                final Label[] labels) {
+            return new LabelsAttribute(labels);
+        }
+
+        @Override
+        protected ByteVector write(
+                final ClassWriter classWriter,
+                final byte[] code,
+                final int codeLength,
+                final int maxStack,
+                final int maxLocals) {
+            return new ByteVector();
+        }
+    }
 }
@@ -27,12 +27,18 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.objectweb.asm.test.Assertions.assertThat;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Random;
 
@@ -158,6 +164,97 @@ public class ClassWriterTest extends AsmTest {
         loadAndInstantiate("A", classWriter.toByteArray());
     }
 
+    /**
+     * Tests the frame computation of a method whose basic blocks are in the reverse order of the
+     * control flow (each block jumps back to the previous one).
+     */
+    @Test
+    public void testComputeFramesWithBackwardJumps() {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+        MethodVisitor methodVisitor =
+                classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        methodVisitor.visitMethodInsn(
+                Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+
+        // The last block is executed first, and stores a String in local 1. Each block then jumps to
+        // the end of the method, where local 1 is used, or to the previous block.
+        methodVisitor = classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)V", null, null);
+        methodVisitor.visitCode();
+        Label[] blocks = new Label[100];
+        for (int i = 0; i < blocks.length; ++i) {
+            blocks[i] = new Label();
+        }
+        Label endLabel = new Label();
+        methodVisitor.visitJumpInsn(Opcodes.GOTO, blocks[blocks.length - 1]);
+        for (int i = 0; i < blocks.length; ++i) {
+            methodVisitor.visitLabel(blocks[i]);
+            if (i == blocks.length - 1) {
+                methodVisitor.visitLdcInsn("s");
+                methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+            }
+            methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+            methodVisitor.visitJumpInsn(Opcodes.IFEQ, endLabel);
+            methodVisitor.visitJumpInsn(Opcodes.GOTO, i == 0 ? endLabel : blocks[i - 1]);
+        }
+        methodVisitor.visitLabel(endLabel);
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+        methodVisitor.visitMethodInsn(
+                Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+        methodVisitor.visitInsn(Opcodes.POP);
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        loadAndInstantiate("A", classWriter.toByteArray());
+    }
+
+    @Test
+    public void testComputeFramesMergeTypesInBothOrders() {
+        int[] getCommonSuperClassCalls = new int[1];
+        ClassWriter classWriter =
+                new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                    @Override
+                    protected String getCommonSuperClass(final String type1, final String type2) {
+                        ++getCommonSuperClassCalls[0];
+                        return super.getCommonSuperClass(type1, type2);
+                    }
+                };
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+        MethodVisitor methodVisitor =
+                classWriter.visitMethod(
+                        Opcodes.ACC_STATIC,
+                        "m",
+                        "(ZLjava/lang/Integer;Ljava/lang/Long;)V",
+                        null,
+                        null);
+        methodVisitor.visitCode();
+        // Merge an Integer and a Long, and then a Long and an Integer.
+        for (int i = 0; i < 2; ++i) {
+            Label elseLabel = new Label();
+            Label endLabel = new Label();
+            methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+            methodVisitor.visitJumpInsn(Opcodes.IFEQ, elseLabel);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 1 + i);
+            methodVisitor.visitJumpInsn(Opcodes.GOTO, endLabel);
+            methodVisitor.visitLabel(elseLabel);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 2 - i);
+            methodVisitor.visitLabel(endLabel);
+            methodVisitor.visitInsn(Opcodes.POP);
+        }
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        classWriter.toByteArray();
+        assertEquals(1, getCommonSuperClassCalls[0]);
+    }
+
     @Test
     public void testGetCommonSuperClass() {
         ClassWriter classWriter = new ClassWriter(0);
@@ -198,10 +295,265 @@ public class ClassWriterTest extends AsmTest {
         assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
     }
 
+    /**
+     * Tests that a ClassReader -> ClassWriter transform with explicit or inferred size hints leaves
+     * classes unchanged.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadAndWriteWithSizeHints(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassWriter classWriter = new ClassWriter(null, 0, null, 1024, 256);
+        classReader.accept(classWriter, attributes(), 0);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+
+        classWriter = new ClassWriter(classReader, 0, null, 0, 0);
+        classReader.accept(
+                new ClassVisitor(apiParameter.value(), classWriter) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        // Prevent the methods from being copied as is, so that their code is visited.
+                        return new MethodVisitor(
+                                api, super.visitMethod(access, name, descriptor, signature, exceptions)) {};
+                    }
+                },
+                attributes(),
+                0);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+    }
+
+    /**
+     * Tests the {@link ClassWriter} recycling constructor, with and without a source ClassReader.
+     */
+    @Test
+    public void testRecyclingConstructor() {
+        ClassReader previousClassReader = null;
+        ClassWriter previousClassWriter = null;
+        ClassWriter previousCopyPoolClassWriter = null;
+        for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+            byte[] classFile = precompiledClass.getBytes();
+            ClassReader classReader =
+                    new ClassReader(classFile, 0, classFile.length, previousClassReader);
+            ClassWriter classWriter = new ClassWriter(null, 0, null, previousClassWriter);
+            classReader.accept(classWriter, attributes(), 0);
+            assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+
+            ClassWriter copyPoolClassWriter =
+                    new ClassWriter(classReader, 0, null, previousCopyPoolClassWriter);
+            classReader.accept(
+                    new ClassVisitor(Opcodes.ASM6, copyPoolClassWriter) {
+                        @Override
+                        public MethodVisitor visitMethod(
+                                final int access,
+                                final String name,
+                                final String descriptor,
+                                final String signature,
+                                final String[] exceptions) {
+                            // Prevent the methods from being copied as is, so that their code is visited.
+                            return new MethodVisitor(
+                                    api, super.visitMethod(access, name, descriptor, signature, exceptions)) {};
+                        }
+                    },
+                    attributes(),
+                    0);
+            assertThatClass(copyPoolClassWriter.toByteArray()).isEqualTo(classFile);
+            previousClassReader = classReader;
+            previousClassWriter = classWriter;
+            previousCopyPoolClassWriter = copyPoolClassWriter;
+        }
+    }
+
+    /**
+     * Tests that a ClassWriter reusing the buffers of a ClassWriter used for larger classes produces
+     * the same class as a new ClassWriter, with and without a source ClassReader.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testRecyclingConstructorAfterLargerClass(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        // jdk3.AllInstructions and jdk3.LargeMethod contain JSR/RET instructions,
+        // incompatible with COMPUTE_FRAMES.
+        int flags =
+                classParameter == PrecompiledClass.JDK3_ALL_INSTRUCTIONS
+                                || classParameter == PrecompiledClass.JDK3_LARGE_METHOD
+                        ? 0
+                        : ClassWriter.COMPUTE_FRAMES;
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+
+        ClassWriter classWriter = new ClassWriter(null, flags, null, null);
+        classReader.accept(classWriter, attributes(), 0);
+        ClassWriter recycledClassWriter =
+                new ClassWriter(null, flags, null, writeLargerClasses(null));
+        classReader.accept(recycledClassWriter, attributes(), 0);
+        assertArrayEquals(classWriter.toByteArray(), recycledClassWriter.toByteArray());
+
+        ClassWriter copyPoolClassWriter = new ClassWriter(classReader, flags, null, null);
+        classReader.accept(copyPoolClassWriter, attributes(), 0);
+        ClassWriter recycledCopyPoolClassWriter =
+                new ClassWriter(classReader, flags, null, writeLargerClasses(classReader));
+        classReader.accept(recycledCopyPoolClassWriter, attributes(), 0);
+        assertArrayEquals(
+                copyPoolClassWriter.toByteArray(), recycledCopyPoolClassWriter.toByteArray());
+    }
+
+    /**
+     * Writes two large classes with frames, with a chain of two ClassWriters.
+     *
+     * @param classReader the ClassReader used to read the class that will be written with the
+     *                    returned ClassWriter, or <tt>null</tt>.
+     * @return the last ClassWriter used, after its toByteArray method has been called.
+     */
+    private static ClassWriter writeLargerClasses(final ClassReader classReader) {
+        ClassWriter classWriter = null;
+        for (PrecompiledClass precompiledClass :
+                new PrecompiledClass[] {
+                    PrecompiledClass.JDK8_LARGE_METHOD, PrecompiledClass.JDK8_ALL_FRAMES
+                }) {
+            ClassReader largeClassReader = new ClassReader(precompiledClass.getBytes());
+            classWriter =
+                    new ClassWriter(
+                            classReader == null ? null : largeClassReader,
+                            ClassWriter.COMPUTE_FRAMES,
+                            null,
+                            classWriter);
+            largeClassReader.accept(classWriter, 0);
+            classWriter.toByteArray();
+        }
+        return classWriter;
+    }
+
     /**
      * Tests that a ClassReader -> ClassWriter transform with the SKIP_CODE option produces a valid
      * class.
      */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadAndWriteTo(final PrecompiledClass classParameter, final Api apiParameter)
+            throws IOException {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassWriter classWriter = new ClassWriter(0);
+        classReader.accept(classWriter, attributes(), 0);
+        int size = classWriter.computeSize();
+        byte[] expectedClassFile = classWriter.toByteArray();
+        assertEquals(expectedClassFile.length, size);
+
+        ByteBuffer heapBuffer = ByteBuffer.allocate(size + 20);
+        heapBuffer.position(10);
+        classWriter.writeTo(heapBuffer.slice());
+        classWriter.writeTo(heapBuffer);
+        assertEquals(10 + size, heapBuffer.position());
+        assertThatClass(Arrays.copyOfRange(heapBuffer.array(), 10, 10 + size))
+                .isEqualTo(expectedClassFile);
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(size);
+        classWriter.writeTo(directBuffer);
+        assertEquals(size, directBuffer.position());
+        byte[] directClassFile = new byte[size];
+        ((ByteBuffer) directBuffer.flip()).get(directClassFile);
+        assertThatClass(directClassFile).isEqualTo(expectedClassFile);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        classWriter.writeTo(outputStream);
+        assertArrayEquals(expectedClassFile, outputStream.toByteArray());
+    }
+
+    /**
+     * Tests that writeTo(OutputStream) writes a large class in several chunks, instead of
+     * serializing the whole class in memory first.
+     */
+    @Test
+    public void testWriteToOutputStreamInChunks() throws IOException {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        for (int i = 0; i < 1000; ++i) {
+            MethodVisitor methodVisitor =
+                    classWriter.visitMethod(Opcodes.ACC_STATIC, "m" + i, "()V", null, null);
+            methodVisitor.visitCode();
+            for (int j = 0; j < 10; ++j) {
+                methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, "C", "f" + i, "I");
+                methodVisitor.visitInsn(Opcodes.POP);
+            }
+            methodVisitor.visitInsn(Opcodes.RETURN);
+            methodVisitor.visitMaxs(1, 0);
+            methodVisitor.visitEnd();
+        }
+        classWriter.visitEnd();
+        byte[] expectedClassFile = classWriter.toByteArray();
+        final int[] maxWriteLength = new int[1];
+        ByteArrayOutputStream outputStream =
+                new ByteArrayOutputStream() {
+                    @Override
+                    public synchronized void write(final byte[] b, final int off, final int len) {
+                        maxWriteLength[0] = Math.max(maxWriteLength[0], len);
+                        super.write(b, off, len);
+                    }
+                };
+
+        classWriter.writeTo(outputStream);
+
+        assertArrayEquals(expectedClassFile, outputStream.toByteArray());
+        assertTrue(maxWriteLength[0] < expectedClassFile.length / 2);
+    }
+
+    @Test
+    public void testWriteToTooSmallBuffer() {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+        classWriter.visitEnd();
+        ByteBuffer byteBuffer = ByteBuffer.allocate(classWriter.computeSize() - 1);
+        assertThrows(BufferOverflowException.class, () -> classWriter.writeTo(byteBuffer));
+        assertEquals(0, byteBuffer.position());
+    }
+
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testNewConstWithCopyPool(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        ClassReader classReader = new ClassReader(classParameter.getBytes());
+        ClassWriter classWriter = new ClassWriter(classReader, 0);
+        char[] charBuffer = new char[classReader.getMaxStringLength()];
+        for (int i = 1; i < classReader.getItemCount(); ++i) {
+            int itemOffset = classReader.getItem(i);
+            if (itemOffset == 0) {
+                continue;
+            }
+            // The constant pool of the original class can contain duplicate items, so we only check
+            // that the returned index designates an item with the same value.
+            switch (classReader.b[itemOffset - 1]) {
+                case Symbol.CONSTANT_UTF8_TAG:
+                    String value = classReader.readUTF(i, charBuffer);
+                    assertEquals(value, classReader.readUTF(classWriter.newUTF8(value), charBuffer));
+                    break;
+                case Symbol.CONSTANT_CLASS_TAG:
+                    String className = classReader.readUTF8(itemOffset, charBuffer);
+                    int classOffset = classReader.getItem(classWriter.newClass(className));
+                    assertEquals(className, classReader.readUTF8(classOffset, charBuffer));
+                    break;
+                case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+                    String name = classReader.readUTF8(itemOffset, charBuffer);
+                    String descriptor = classReader.readUTF8(itemOffset + 2, charBuffer);
+                    int nameAndTypeOffset =
+                            classReader.getItem(classWriter.newNameType(name, descriptor));
+                    assertEquals(name, classReader.readUTF8(nameAndTypeOffset, charBuffer));
+                    assertEquals(descriptor, classReader.readUTF8(nameAndTypeOffset + 2, charBuffer));
+                    break;
+                default:
+                    break;
+            }
+        }
+        // Check that the constants of the original class have not been added again.
+        assertEquals(classReader.getItemCount(), classWriter.newUTF8("$$NewConstant$$"));
+    }
+
     @ParameterizedTest
     @MethodSource(ALL_CLASSES_AND_ALL_APIS)
     public void testReadAndWriteWithSkipCode(
@@ -228,6 +580,46 @@ public class ClassWriterTest extends AsmTest {
         assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
     }
 
+    /**
+     * Tests that a ClassReader -> ClassWriter transform with the copy pool option, through a method
+     * adapter which returns the method writer as its pass through visitor, leaves classes unchanged
+     * and copies the methods without visiting them (the adapter's visitEnd method is not called).
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadAndWriteWithCopyPoolAndPassThroughAdapter(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassWriter classWriter = new ClassWriter(classReader, 0);
+        classReader.accept(
+                new ClassVisitor(apiParameter.value(), classWriter) {
+                    @Override
+                    public MethodVisitor visitMethod(
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final String signature,
+                            final String[] exceptions) {
+                        return new MethodVisitor(
+                                api, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+                            @Override
+                            public MethodVisitor getPassThroughVisitor() {
+                                return mv;
+                            }
+
+                            @Override
+                            public void visitEnd() {
+                                throw new AssertionError("Unexpected visitEnd");
+                            }
+                        };
+                    }
+                },
+                attributes(),
+                0);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+    }
+
     /**
      * Tests that a ClassReader -> ClassWriter transform with the EXPAND_FRAMES option leaves classes
      * unchanged.
@@ -326,6 +718,37 @@ public class ClassWriterTest extends AsmTest {
                 .when(classParameter.isMoreRecentThanCurrentJdk());
     }
 
+    /**
+     * Tests that a ClassReader -> ClassWriter transform with the COMPUTE_FRAMES option, for which
+     * isFrameComputationNeeded always returns false, keeps the visited frames instead of computing
+     * them. Classes must therefore be left unchanged, without any call to getCommonSuperClass, and
+     * even if they contain JSR and RET instructions.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadAndWriteWithComputeFramesAndKeptFrames(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        byte[] classFile = classParameter.getBytes();
+        ClassReader classReader = new ClassReader(classFile);
+        ClassWriter classWriter =
+                new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                    @Override
+                    protected boolean isFrameComputationNeeded(
+                            final int access, final String name, final String descriptor) {
+                        return false;
+                    }
+
+                    @Override
+                    protected String getCommonSuperClass(final String type1, final String type2) {
+                        throw new AssertionError("Unexpected frame computation");
+                    }
+                };
+        // Even the JSR/RET instructions of jdk3.AllInstructions and jdk3.LargeMethod, incompatible
+        // with the computation of frames from scratch, must work here.
+        classReader.accept(classWriter, attributes(), 0);
+        assertThatClass(classWriter.toByteArray()).isEqualTo(classFile);
+    }
+
     /**
      * Tests that classes going through a ClassReader -> ClassWriter transform with the SKIP_FRAMES
      * and COMPUTE_FRAMES options can be loaded and pass bytecode verification.
@@ -28,6 +28,7 @@
 package org.objectweb.asm;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.junit.jupiter.api.Test;
@@ -47,6 +48,11 @@ public class MethodVisitorTest {
         });
     }
 
+    @Test
+    public void testGetPassThroughVisitor() {
+        assertNull(new MethodVisitor(Opcodes.ASM6) {}.getPassThroughVisitor());
+    }
+
     @Test
     public void testAsm5Features() {
         MethodVisitor methodVisitor = new MethodVisitor(Opcodes.ASM4, null) {
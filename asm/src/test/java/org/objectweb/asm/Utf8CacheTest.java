@@ -0,0 +1,97 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+// contributors may be used to endorse or promote products derived from
+// this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+
+/**
+ * Utf8Cache tests.
+ */
+public class Utf8CacheTest extends AsmTest {
+
+    @Test
+    public void testSharedStrings() throws IOException {
+        Utf8Cache utf8Cache = new Utf8Cache();
+        ClassReader classReader1 = new ClassReader(getClass().getName());
+        ClassReader classReader2 = new ClassReader(ClassReaderTest.class.getName());
+        classReader1.setUtf8Cache(utf8Cache);
+        classReader2.setUtf8Cache(utf8Cache);
+
+        assertEquals(AsmTest.class.getName().replace('.', '/'), classReader1.getSuperName());
+        assertSame(classReader1.getSuperName(), classReader2.getSuperName());
+        ClassReader classReader3 = new ClassReader(ClassReaderTest.class.getName());
+        assertNotSame(classReader1.getSuperName(), classReader3.getSuperName());
+    }
+
+    @Test
+    public void testNonAsciiStringsAreNotCached() {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Cé", null, "java/lang/Object", null);
+        classWriter.visitEnd();
+        byte[] classFile = classWriter.toByteArray();
+        Utf8Cache utf8Cache = new Utf8Cache(1);
+        ClassReader classReader1 = new ClassReader(classFile);
+        ClassReader classReader2 = new ClassReader(classFile);
+        classReader1.setUtf8Cache(utf8Cache);
+        classReader2.setUtf8Cache(utf8Cache);
+
+        assertEquals("Cé", classReader1.getClassName());
+        assertEquals("Cé", classReader2.getClassName());
+        assertNotSame(classReader1.getClassName(), classReader2.getClassName());
+    }
+
+    /**
+     * Tests that classes read with a small shared cache (with many collisions) are unchanged.
+     */
+    @ParameterizedTest
+    @MethodSource(ALL_CLASSES_AND_LATEST_API)
+    public void testReadWithSmallCache(
+            final PrecompiledClass classParameter, final Api apiParameter) {
+        Utf8Cache utf8Cache = new Utf8Cache(3);
+        byte[] classFile = classParameter.getBytes();
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        new ClassReader(classFile).accept(expectedClassWriter, 0);
+        for (int i = 0; i < 2; ++i) {
+            ClassReader classReader = new ClassReader(classFile);
+            classReader.setUtf8Cache(utf8Cache);
+            ClassWriter classWriter = new ClassWriter(0);
+            classReader.accept(classWriter, 0);
+            assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+        }
+    }
+}
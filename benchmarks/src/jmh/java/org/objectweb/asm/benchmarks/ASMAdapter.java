@@ -51,6 +51,8 @@ import org.objectweb.asm.tree.ClassNode;
 public class ASMAdapter extends Adapter {
 
     private int asmApi;
+    private ClassReader previousClassReader;
+    private ClassWriter previousClassWriter;
 
     @Override
     public String getVersion() {
@@ -118,6 +120,18 @@ public class ASMAdapter extends Adapter {
         return classWriter.toByteArray();
     }
 
+    @Override
+    public byte[] readAndWriteWithRecycledBuffers(final byte[] classFile) {
+        ClassReader classReader =
+                new ClassReader(classFile, 0, classFile.length, previousClassReader);
+        ClassWriter classWriter = new ClassWriter(null, 0, null, previousClassWriter);
+        classReader.accept(classWriter, 0);
+        byte[] result = classWriter.toByteArray();
+        previousClassReader = classReader;
+        previousClassWriter = classWriter;
+        return result;
+    }
+
     @Override
     public byte[] readAndWriteWithObjectModel(final byte[] classFile) {
         ClassWriter classWriter = new ClassWriter(0);
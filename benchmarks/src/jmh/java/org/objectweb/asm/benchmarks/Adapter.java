@@ -121,6 +121,17 @@ public abstract class Adapter {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Reads a class and writes and returns an equivalent one, reusing the internal buffers used for
+     * the previous class.
+     *
+     * @param classFile a JVMS ClassFile structure
+     * @return the rebuilt class.
+     */
+    public byte[] readAndWriteWithRecycledBuffers(final byte[] classFile) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Reads a class and writes and returns an equivalent one, via the construction of in-memory,
      * object representation of the class.
@@ -363,4 +363,11 @@ public class AdapterBenchmark extends AbstractBenchmark {
             blackhole.consume(asm6_1.readAndWriteWithObjectModel(classFile));
         }
     }
+
+    @Benchmark
+    public void readAndWriteWithRecycledBuffers_asm6_1(final Blackhole blackhole) {
+        for (byte[] classFile : classFiles) {
+            blackhole.consume(asm6_1.readAndWriteWithRecycledBuffers(classFile));
+        }
+    }
 }
@@ -0,0 +1,202 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the performance of the stack map frame computation of ASM, on methods
+ * with a large control flow graph (many sequential or nested loops). The frames of these methods
+ * must be propagated along many back edges, so that the order in which the basic blocks are
+ * processed has a large impact on the number of times each block is processed.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ComputeFramesBenchmark extends AbstractBenchmark {
+
+    private Adapter asm6_0;
+    private Adapter asm6_1;
+
+    /**
+     * Some generated class files, containing methods with a large control flow graph.
+     */
+    private ArrayList<byte[]> largeControlFlowClassFiles;
+
+    public ComputeFramesBenchmark() {
+        super("org.objectweb.asm.benchmarks.ASMAdapter");
+    }
+
+    /**
+     * Prepares the benchmark by creating an {@link Adapter} for each ASM version to be tested, and
+     * by generating some test data (i.e. some classes with large methods).
+     *
+     * @throws Exception if an error occurs.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        asm6_0 = (Adapter) new AsmBenchmarkFactory(AsmVersion.V6_0).newAsmBenchmark();
+        asm6_1 = (Adapter) new AsmBenchmarkFactory(AsmVersion.V6_1).newAsmBenchmark();
+
+        // Check that the correct versions of ASM have been loaded.
+        if (!asm6_0.getVersion().equals("ASM6") || !asm6_1.getVersion().equals("ASM6")) {
+            throw new IllegalStateException();
+        }
+
+        prepareClasses();
+        largeControlFlowClassFiles = new ArrayList<byte[]>();
+        largeControlFlowClassFiles.add(generateLoops("SequentialLoops", 500, 1));
+        largeControlFlowClassFiles.add(generateLoops("NestedLoops", 1, 200));
+        largeControlFlowClassFiles.add(generateLoops("SequentialNestedLoops", 50, 10));
+        largeControlFlowClassFiles.add(generateBackwardJumps("BackwardJumps", 2000));
+    }
+
+    /**
+     * Generates a class with a static method containing sequential and/or nested loops. Each loop
+     * assigns a new type to a local variable, which must be merged with the previous types of this
+     * variable at each loop header.
+     *
+     * @param className     the name of the class to generate.
+     * @param numberOfLoops the number of sequential loops.
+     * @param nestingDepth  the number of nested loops in each sequential loop.
+     * @return the generated class file.
+     */
+    private static byte[] generateLoops(
+            final String className, final int numberOfLoops, final int nestingDepth) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(
+                Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        MethodVisitor methodVisitor =
+                classWriter.visitMethod(Opcodes.ACC_STATIC, "loops", "(I)V", null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitInsn(Opcodes.ACONST_NULL);
+        methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+        Label[] loopStarts = new Label[nestingDepth];
+        Label[] loopEnds = new Label[nestingDepth];
+        for (int i = 0; i < numberOfLoops; ++i) {
+            for (int j = 0; j < nestingDepth; ++j) {
+                loopStarts[j] = new Label();
+                loopEnds[j] = new Label();
+                methodVisitor.visitLabel(loopStarts[j]);
+                methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+                methodVisitor.visitJumpInsn(Opcodes.IFEQ, loopEnds[j]);
+            }
+            methodVisitor.visitLdcInsn("loop");
+            methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+            for (int j = nestingDepth - 1; j >= 0; --j) {
+                methodVisitor.visitIincInsn(0, -1);
+                methodVisitor.visitJumpInsn(Opcodes.GOTO, loopStarts[j]);
+                methodVisitor.visitLabel(loopEnds[j]);
+            }
+        }
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Generates a class with a static method whose basic blocks are in the reverse order of the
+     * control flow: the method starts with a jump to its last block, and each block jumps to the
+     * end of the method or to the previous block.
+     *
+     * @param className      the name of the class to generate.
+     * @param numberOfBlocks the number of basic blocks of the method.
+     * @return the generated class file.
+     */
+    private static byte[] generateBackwardJumps(final String className, final int numberOfBlocks) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(
+                Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        MethodVisitor methodVisitor =
+                classWriter.visitMethod(Opcodes.ACC_STATIC, "backwardJumps", "(I)V", null, null);
+        methodVisitor.visitCode();
+        Label[] blocks = new Label[numberOfBlocks];
+        for (int i = 0; i < numberOfBlocks; ++i) {
+            blocks[i] = new Label();
+        }
+        Label endLabel = new Label();
+        methodVisitor.visitJumpInsn(Opcodes.GOTO, blocks[numberOfBlocks - 1]);
+        for (int i = 0; i < numberOfBlocks; ++i) {
+            methodVisitor.visitLabel(blocks[i]);
+            methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+            methodVisitor.visitJumpInsn(Opcodes.IFEQ, endLabel);
+            methodVisitor.visitJumpInsn(Opcodes.GOTO, i == 0 ? endLabel : blocks[i - 1]);
+        }
+        methodVisitor.visitLabel(endLabel);
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    @Benchmark
+    public void readAndWriteWithComputeFrames_asm6_0(final Blackhole blackhole) {
+        for (byte[] classFile : classFiles) {
+            blackhole.consume(asm6_0.readAndWriteWithComputeFrames(classFile));
+        }
+    }
+
+    @Benchmark
+    public void readAndWriteWithComputeFrames_asm6_1(final Blackhole blackhole) {
+        for (byte[] classFile : classFiles) {
+            blackhole.consume(asm6_1.readAndWriteWithComputeFrames(classFile));
+        }
+    }
+
+    @Benchmark
+    public void readAndWriteLargeControlFlowWithComputeFrames_asm6_0(final Blackhole blackhole) {
+        for (byte[] classFile : largeControlFlowClassFiles) {
+            blackhole.consume(asm6_0.readAndWriteWithComputeFrames(classFile));
+        }
+    }
+
+    @Benchmark
+    public void readAndWriteLargeControlFlowWithComputeFrames_asm6_1(final Blackhole blackhole) {
+        for (byte[] classFile : largeControlFlowClassFiles) {
+            blackhole.consume(asm6_1.readAndWriteWithComputeFrames(classFile));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the performance of the constant pool construction of ASM, i.e. of the
+ * lookups and insertions in the symbol table of a ClassWriter. The classes are read and written
+ * without copying their constant pool, so that each constant they use is looked up in a new symbol
+ * table. The generated classes use many constants, most of them several times.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ConstantPoolBenchmark extends AbstractBenchmark {
+
+    private Adapter asm6_0;
+    private Adapter asm6_1;
+
+    /**
+     * Some generated class files, containing a large constant pool.
+     */
+    private ArrayList<byte[]> largeConstantPoolClassFiles;
+
+    public ConstantPoolBenchmark() {
+        super("org.objectweb.asm.benchmarks.ASMAdapter");
+    }
+
+    /**
+     * Prepares the benchmark by creating an {@link Adapter} for each ASM version to be tested, and
+     * by generating some test data (i.e. some classes with a large constant pool).
+     *
+     * @throws Exception if an error occurs.
+     */
+    @Setup
+    public void prepare() throws Exception {
+        asm6_0 = (Adapter) new AsmBenchmarkFactory(AsmVersion.V6_0).newAsmBenchmark();
+        asm6_1 = (Adapter) new AsmBenchmarkFactory(AsmVersion.V6_1).newAsmBenchmark();
+
+        // Check that the correct versions of ASM have been loaded.
+        if (!asm6_0.getVersion().equals("ASM6") || !asm6_1.getVersion().equals("ASM6")) {
+            throw new IllegalStateException();
+        }
+
+        prepareClasses();
+        largeConstantPoolClassFiles = new ArrayList<byte[]>();
+        for (int i = 0; i < 20; ++i) {
+            largeConstantPoolClassFiles.add(generateConstants("Constants" + i, 2000));
+        }
+    }
+
+    /**
+     * Generates a class with a static method using many constants: string constants, and field and
+     * method references to a few owner classes. Each constant is used several times.
+     *
+     * @param className          the name of the class to generate.
+     * @param numberOfReferences the number of string, field and method references to generate.
+     * @return the generated class file.
+     */
+    private static byte[] generateConstants(final String className, final int numberOfReferences) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(
+                Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        MethodVisitor methodVisitor =
+                classWriter.visitMethod(Opcodes.ACC_STATIC, "constants", "()V", null, null);
+        methodVisitor.visitCode();
+        for (int i = 0; i < numberOfReferences; ++i) {
+            methodVisitor.visitLdcInsn("string" + (i % 500));
+            methodVisitor.visitInsn(Opcodes.POP);
+            String owner = "pkg/Owner" + (i % 50);
+            methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, owner, "field" + (i % 100), "I");
+            methodVisitor.visitInsn(Opcodes.POP);
+            methodVisitor.visitMethodInsn(
+                    Opcodes.INVOKESTATIC, owner, "method" + (i % 100), "()V", false);
+        }
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    @Benchmark
+    public void readAndWrite_asm6_0(final Blackhole blackhole) {
+        for (byte[] classFile : classFiles) {
+            blackhole.consume(asm6_0.readAndWrite(classFile, /* computeMaxs = */ false));
+        }
+    }
+
+    @Benchmark
+    public void readAndWrite_asm6_1(final Blackhole blackhole) {
+        for (byte[] classFile : classFiles) {
+            blackhole.consume(asm6_1.readAndWrite(classFile, /* computeMaxs = */ false));
+        }
+    }
+
+    @Benchmark
+    public void readAndWriteLargeConstantPool_asm6_0(final Blackhole blackhole) {
+        for (byte[] classFile : largeConstantPoolClassFiles) {
+            blackhole.consume(asm6_0.readAndWrite(classFile, /* computeMaxs = */ false));
+        }
+    }
+
+    @Benchmark
+    public void readAndWriteLargeConstantPool_asm6_1(final Blackhole blackhole) {
+        for (byte[] classFile : largeConstantPoolClassFiles) {
+            blackhole.consume(asm6_1.readAndWrite(classFile, /* computeMaxs = */ false));
+        }
+    }
+}